@@ -4,24 +4,24 @@
 * AnimatedSprite class
 *****************************************************/
 import java.awt.*;
-import java.applet.*;
 import java.awt.image.*;
 import java.net.*;
 
 public class AnimatedSprite extends Sprite {
     //this image holds the large tiled bitmap
     private ImageEntity animImage;
-    //temp image passed to parent draw method
-    BufferedImage tempImage;
-    Graphics2D tempSurface;
+    //frames cut from the tiled bitmap, shared with other sprites
+    private BufferedImage[] frames;
     //custom properties
     private int currFrame, totFrames;
     private int animDir;
     private int frCount, frDelay;
     private int frWidth, frHeight;
     private int cols;
+    //pool this sprite goes back to when it is purged, if any
+    private SpritePool pool;
 
-    public AnimatedSprite(Applet applet, Graphics2D g2d) {
+    public AnimatedSprite(Component applet, Graphics2D g2d) {
         super(applet, g2d);
         animImage = new ImageEntity(applet);
         currFrame = 0;
@@ -44,24 +44,56 @@ public class AnimatedSprite extends Sprite {
         setFrameWidth(width);
         setFrameHeight(height);
 
-        //frame image is passed to parent class for drawing
-        tempImage = new BufferedImage(width, height,
-            BufferedImage.TYPE_INT_ARGB);
-        tempSurface = tempImage.createGraphics();
-        super.setImage(tempImage);
+        //show the first frame until the animation starts
+        updateFrame();
+    }
+
+    /*****************************************************
+     * clear the animation state as well as the sprite state
+     *****************************************************/
+    public void reset() {
+        super.reset();
+        animImage.setImage(null);
+        frames = null;
+        currFrame = 0;
+        totFrames = 0;
+        animDir = 1;
+        frCount = 0;
+        frDelay = 0;
+        frWidth = 0;
+        frHeight = 0;
+        cols = 0;
+        pool = null;
+    }
+
+    public SpritePool pool() { return pool; }
+    public void setPool(SpritePool pool) { this.pool = pool; }
+
+    //return the sprite to its pool once it has left the sprite list
+    public void recycle() {
+        if (pool != null) pool.release(this);
     }
 
     public int currentFrame() { return currFrame; }
     public void setCurrentFrame(int frame) { currFrame = frame; }
 
     public int frameWidth() { return frWidth; }
-    public void setFrameWidth(int width) { frWidth = width; }
+    public void setFrameWidth(int width) {
+        frWidth = width;
+        frames = null;
+    }
 
     public int frameHeight() { return frHeight; }
-    public void setFrameHeight(int height) { frHeight = height; }
+    public void setFrameHeight(int height) {
+        frHeight = height;
+        frames = null;
+    }
 
     public int totalFrames() { return totFrames; }
-    public void setTotalFrames(int total) { totFrames = total; }
+    public void setTotalFrames(int total) {
+        totFrames = total;
+        frames = null;
+    }
 
     public int animationDirection() { return animDir; }
     public void setAnimationDirection(int dir) { animDir = dir; }
@@ -70,10 +102,16 @@ public class AnimatedSprite extends Sprite {
     public void setFrameDelay(int delay) { frDelay = delay; }
 
     public int columns() { return cols; }
-    public void setColumns(int num) { cols = num; }
+    public void setColumns(int num) {
+        cols = num;
+        frames = null;
+    }
 
     public Image getAnimImage() { return animImage.getImage(); }
-    public void setAnimImage(Image image) { animImage.setImage(image); }
+    public void setAnimImage(Image image) {
+        animImage.setImage(image);
+        frames = null;
+    }
 
     public void updateAnimation() {
         frCount += 1;
@@ -91,26 +129,17 @@ public class AnimatedSprite extends Sprite {
     }
 
     public void updateFrame() {
-        if (totFrames > 0) {
-            //calculate the current frame's X and Y position
-            int frameX = (currentFrame() % columns()) * frameWidth();
-            int frameY = (currentFrame() / columns()) * frameHeight();
-
-            if (tempImage == null) {
-                tempImage = new BufferedImage(frameWidth(), frameHeight(),
-                                              BufferedImage.TYPE_INT_ARGB);
-                tempSurface = tempImage.createGraphics();
+        if (totFrames > 0 && cols > 0 && animImage.getImage() != null) {
+            //look up the shared frames the first time they are needed
+            if (frames == null) {
+                frames = FrameCache.frames(animImage.getImage(), cols,
+                    totFrames, frWidth, frHeight);
             }
 
-            //copy the frame onto the temp image
-            if (animImage.getImage() != null) {
-                tempSurface.drawImage(animImage.getImage(), 0, 0, frameWidth() - 1,
-                frameHeight() - 1, frameX, frameY,
-                frameX + frameWidth(),
-                frameY + frameHeight(), applet());
+            //pass the current frame on to the parent class and draw it
+            if (currFrame >= 0 && currFrame < frames.length) {
+                super.setImage(frames[currFrame]);
             }
-            //pass the temp image on to the parent class and draw it
-            super.setImage(tempImage);
         }
     }
 
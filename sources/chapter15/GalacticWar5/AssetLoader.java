@@ -0,0 +1,122 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* AssetLoader class
+*****************************************************/
+import java.awt.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/*****************************************************
+ * loads images on a pool of worker threads, one per core,
+ * so startup time depends on the number of cores rather
+ * than the number of images. each load returns a future;
+ * waitForAll blocks once until every image is ready. the
+ * loader isn't done until finishSubmitting says no more
+ * loads are coming, so it can't look finished while the
+ * first few are still being asked for.
+ *****************************************************/
+class AssetLoader {
+    //worker threads shared by every loader
+    private static ExecutorService workers;
+
+    //component repainted as each asset finishes, may be null
+    private Component observer;
+
+    //loads that have been started and how many have finished
+    private ArrayList<Future<ImageEntity>> pending =
+        new ArrayList<Future<ImageEntity>>();
+    private AtomicInteger finished = new AtomicInteger(0);
+
+    //set once every load has been asked for
+    private volatile boolean submitted = false;
+
+    public AssetLoader(Component observer) {
+        this.observer = observer;
+    }
+
+    //number of assets requested and loaded so far
+    public synchronized int total() { return pending.size(); }
+    public int loaded() { return finished.get(); }
+    public boolean isDone() { return submitted && loaded() >= total(); }
+
+    //no more loads will be asked for
+    public void finishSubmitting() { submitted = true; }
+    public boolean finishedSubmitting() { return submitted; }
+
+    //fraction of the requested assets that are ready, from 0 to 1
+    public float progress() {
+        if (isDone()) return 1.0f;
+        int total = total();
+        return (total == 0) ? 0.0f : (float) loaded() / total;
+    }
+
+    /*****************************************************
+     * start loading an image file into the passed entity;
+     * the entity must not be drawn until the future is done.
+     * images sprites collide with need a collision mask.
+     * no load may be started after finishSubmitting.
+     *****************************************************/
+    public Future<ImageEntity> load(ImageEntity entity, String filename) {
+        return load(entity, filename, false);
+    }
+
+    public synchronized Future<ImageEntity> load(final ImageEntity entity,
+        final String filename, final boolean collides)
+    {
+        if (submitted)
+            throw new IllegalStateException("finishSubmitting was already called");
+        Future<ImageEntity> future = workers().submit(new Callable<ImageEntity>() {
+            public ImageEntity call() {
+                try {
+                    entity.load(filename, collides);
+                    return entity;
+                }
+                finally {
+                    finished.incrementAndGet();
+                    if (observer != null) observer.repaint();
+                }
+            }
+        });
+        pending.add(future);
+        return future;
+    }
+
+    /*****************************************************
+     * block until every requested asset has been loaded
+     *****************************************************/
+    public void waitForAll() {
+        ArrayList<Future<ImageEntity>> loads;
+        synchronized (this) {
+            loads = new ArrayList<Future<ImageEntity>>(pending);
+        }
+        for (Future<ImageEntity> future : loads) {
+            try {
+                future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+    }
+
+    //daemon threads so a loader never keeps the program running
+    private static synchronized ExecutorService workers() {
+        if (workers == null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            workers = Executors.newFixedThreadPool(cores, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "asset loader");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return workers;
+    }
+}
@@ -0,0 +1,175 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* AudioBenchmark class
+*****************************************************/
+import java.io.*;
+import java.util.*;
+
+/*****************************************************
+ * decodes every au, wav and aiff file in a folder, checks
+ * that the AudioMixer puts a sample out at the expected
+ * level and that a sound stopped and played again is
+ * heard, then prints how long it takes to mix one buffer
+ * of a number of voices against the time that buffer lasts,
+ * then how long posting a sound command takes and how many
+ * are dropped when they come faster than they are taken,
+ * and how many voices a frame full of explosions ends up
+ * with, with and without sounds joining each other.
+ * everything is mixed offline, so no audio device is
+ * needed.
+ *
+ * usage: java AudioBenchmark [folder] [voices...]
+ *****************************************************/
+public class AudioBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        File folder = new File((args.length > 0) ? args[0] : "../../../media/sounds");
+        int[] counts = { 1, 8, 32 };
+        if (args.length > 1) {
+            counts = new int[args.length - 1];
+            for (int n = 1; n < args.length; n++) {
+                counts[n - 1] = Integer.parseInt(args[n]);
+            }
+        }
+
+        //decode every sound in the folder
+        File[] files = folder.listFiles();
+        if (files == null) {
+            System.out.println("No folder " + folder);
+            return;
+        }
+        Arrays.sort(files);
+        ArrayList<AudioSample> samples = new ArrayList<AudioSample>();
+        for (int n = 0; n < files.length; n++) {
+            String name = files[n].getName().toLowerCase();
+            if (!name.endsWith(".au") && !name.endsWith(".wav") && !name.endsWith(".aiff"))
+                continue;
+            long start = System.nanoTime();
+            AudioSample sample = AudioSample.load(files[n], AudioMixer.DEFAULT_RATE);
+            long took = System.nanoTime() - start;
+            samples.add(sample);
+            System.out.println(sample.name() + ": " + sample.channels() + " channel(s), "
+                + sample.frames() + " frames, " + round(sample.seconds()) + " s, decoded in "
+                + ms(took) + " ms");
+        }
+        if (samples.isEmpty()) return;
+
+        //a mono voice in the center comes out 3dB down on both sides
+        AudioSample first = samples.get(0);
+        AudioMixer check = new AudioMixer();
+        check.play(first, 1f, 0f, 0, false);
+        byte[] out = check.render(Math.min(first.frames(), 44100));
+        int worst = 0;
+        for (int f = 0; f < out.length / 4; f++) {
+            float s = first.data()[f * first.channels()] * (float) Math.sqrt(0.5);
+            int expect = (int)(Math.max(-1f, Math.min(1f, s)) * 32767f);
+            int left = (short)((out[4 * f] & 0xFF) | (out[4 * f + 1] << 8));
+            int right = (short)((out[4 * f + 2] & 0xFF) | (out[4 * f + 3] << 8));
+            worst = Math.max(worst, Math.max(Math.abs(left - expect), Math.abs(right - expect)));
+        }
+        System.out.println("level check on " + first.name() + ": worst error "
+            + worst + " (of 32767)");
+
+        //a sound stopped and played again at once gets a voice of its
+        //own, and stopping group 0 leaves sounds with no group alone
+        check = new AudioMixer();
+        int group = check.newGroup();
+        check.play(first, 1f, 0f, 0, false, 0, 0, group);
+        check.render(512);
+        check.stopGroup(group);
+        check.render(512);
+        check.play(first, 1f, 0f, 0, false, 0, 0, group);
+        out = check.render(512);
+        boolean heard = false;
+        for (int n = 0; n < out.length; n++) {
+            if (out[n] != 0) heard = true;
+        }
+        System.out.println("stop then play: " + check.activeVoices() + " voice(s), "
+            + check.coalesced() + " joined, " + (heard ? "heard" : "SILENT"));
+        check.play(first, 1f, 0f, 0, false);
+        check.stopGroup(0);
+        check.render(512);
+        System.out.println("stop group 0: " + check.activeVoices()
+            + " voice(s) still playing (2 expected)");
+
+        //best of five rounds mixing the same number of voices
+        for (int c = 0; c < counts.length; c++) {
+            int voices = counts[c];
+            AudioMixer mixer = new AudioMixer(AudioMixer.DEFAULT_RATE,
+                AudioMixer.DEFAULT_BUFFER, voices);
+            byte[] buffer = new byte[mixer.bufferFrames() * 4];
+            int buffers = 2000;
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < 6; round++) {
+                long start = System.nanoTime();
+                for (int b = 0; b < buffers; b++) {
+                    //keep every voice busy, looping so none runs out
+                    if (mixer.activeVoices() < voices) {
+                        for (int v = mixer.activeVoices(); v < voices; v++) {
+                            mixer.play(samples.get(v % samples.size()), 0.5f,
+                                (v % 3) - 1, 0, true);
+                        }
+                    }
+                    mixer.render(buffer, mixer.bufferFrames());
+                }
+                long took = System.nanoTime() - start;
+                if (round == 0) continue;
+                best = Math.min(best, took / buffers);
+            }
+            double real = mixer.bufferMillis();
+            System.out.println(voices + " voices: " + ms(best) + " ms per "
+                + mixer.bufferFrames() + " frame buffer (" + round(real) + " ms of sound, "
+                + round(real * 1000000 / best) + "x real time)");
+        }
+
+        //post bursts bigger than the queue between buffers
+        AudioMixer mixer = new AudioMixer();
+        byte[] buffer = new byte[mixer.bufferFrames() * 4];
+        int bursts = 200, burst = 1000;
+        long posting = 0;
+        for (int b = 0; b < bursts; b++) {
+            long start = System.nanoTime();
+            for (int n = 0; n < burst; n++) {
+                mixer.play(first, 0.5f, 0f, 0, false);
+            }
+            posting += System.nanoTime() - start;
+            mixer.render(buffer, mixer.bufferFrames());
+        }
+        System.out.println((bursts * burst) + " plays posted in bursts of " + burst
+            + ": " + round(posting / (double)(bursts * burst)) + " ns each, dropped "
+            + mixer.dropped() + " with a " + mixer.commands().capacity()
+            + " command queue");
+
+        //one frame where everything on screen blows up at once
+        int[] deaths = { 10, 100, 200 };
+        for (int c = 0; c < deaths.length; c++) {
+            for (int joined = 0; joined < 2; joined++) {
+                long best = Long.MAX_VALUE;
+                for (int round = 0; round < 6; round++) {
+                    mixer = new AudioMixer();
+                    mixer.setVoiceBudget(16);
+                    mixer.setCoalesceMillis((joined == 1) ? AudioMixer.DEFAULT_COALESCE : 0);
+                    for (int n = 0; n < deaths[c]; n++) {
+                        mixer.play(first, 0.5f, 0f, 0, false, n % 3, 0);
+                    }
+                    long start = System.nanoTime();
+                    mixer.render(buffer, mixer.bufferFrames());
+                    if (round > 0) best = Math.min(best, System.nanoTime() - start);
+                }
+                System.out.println(deaths[c] + " explosions in one frame, "
+                    + ((joined == 1) ? "joined" : "not joined") + ": "
+                    + mixer.activeVoices() + " voices, " + mixer.coalesced() + " joined, "
+                    + mixer.culled() + " culled, first buffer " + ms(best) + " ms");
+            }
+        }
+    }
+
+    private static double ms(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,590 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* AudioMixer class
+*****************************************************/
+import javax.sound.sampled.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/*****************************************************
+ * plays any number of decoded samples through a single
+ * output line. a mixer thread adds up every active voice
+ * with its own gain and pan, one small buffer at a time,
+ * and writes the result to a 16 bit stereo SourceDataLine.
+ * the buffer size sets the latency: 512 frames at 44.1kHz
+ * is about 12ms. before start is called, render mixes into
+ * a byte array instead, which is how the mixer is tested
+ * and timed. if start finds no audio device the mixer goes
+ * silent: nothing would ever take its commands, so they
+ * are ignored rather than left to fill the queue, until
+ * render is called to mix it offline.
+ *
+ * play, stop and setGain don't touch the voices: they post
+ * a command to an AudioQueue, and the mixer thread carries
+ * out every waiting command before it mixes each buffer.
+ * so the game loop never waits on the mixer or the line,
+ * and the voices belong to the mixer thread alone. they
+ * should all be called from one thread, the game loop.
+ *
+ * a sound is known by its group, from newGroup, or by its
+ * sample if it has none, so two sounds made from the same
+ * file can be kept apart. a sound started while the same
+ * sound began playing no more than the coalesce window ago
+ * joins that voice instead of taking one of its own, and
+ * the voice gets louder the way that many copies would add
+ * up in power (at most twice the loudest one). each play
+ * also has a priority and can limit how many voices its
+ * sound takes; when the voice budget is used up a new sound
+ * takes over the quietest-ranked, oldest voice, or is
+ * culled if every voice outranks it. however many sounds
+ * start in one frame, the mixer never mixes more than
+ * the budget.
+ *****************************************************/
+class AudioMixer {
+    //defaults for the output format and sizes
+    static final float DEFAULT_RATE = 44100f;
+    static final int DEFAULT_BUFFER = 512;
+    static final int DEFAULT_VOICES = 32;
+    static final int DEFAULT_COMMANDS = 256;
+    static final double DEFAULT_COALESCE = 20.0;
+
+    //loudest a voice can get from sounds joining it, over the loudest one
+    static final float MAX_COALESCED = 2f;
+
+    private float sampleRate;
+    private int bufferFrames;
+
+    //voices; a voice with no sample is free
+    private Voice[] voices;
+    private volatile int active = 0;
+
+    //most voices mixed at once, and how close two starts are joined
+    private volatile int budget;
+    private volatile int coalesceFrames;
+
+    //plays joined to another voice, and plays that got no voice
+    private volatile long coalesced = 0;
+    private volatile long culled = 0;
+
+    //commands from the game loop, and the last voice number it gave out
+    private AudioQueue commands;
+    private int nextId = 1;
+    private AtomicInteger nextGroup = new AtomicInteger(1);
+    private AudioQueue.Handler handler = new AudioQueue.Handler() {
+        public void command(int type, int id, AudioSample sample, float gain,
+            float pan, int repeat, boolean loop, int priority, int limit,
+            int group)
+        {
+            execute(type, id, sample, gain, pan, repeat, loop, priority, limit, group);
+        }
+    };
+
+    //mix buffers, reused for every pass
+    private float[] mix;
+    private byte[] out;
+
+    //samples already decoded, by name
+    private HashMap<String, AudioSample> samples = new HashMap<String, AudioSample>();
+
+    //output line and the thread feeding it
+    private SourceDataLine line;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    //set when start failed and render hasn't been called since
+    private volatile boolean silent = false;
+
+    public AudioMixer() {
+        this(DEFAULT_RATE, DEFAULT_BUFFER, DEFAULT_VOICES);
+    }
+
+    public AudioMixer(float sampleRate, int bufferFrames, int voiceCount) {
+        this(sampleRate, bufferFrames, voiceCount, DEFAULT_COMMANDS);
+    }
+
+    public AudioMixer(float sampleRate, int bufferFrames, int voiceCount,
+        int commandCount)
+    {
+        this.sampleRate = sampleRate;
+        this.bufferFrames = bufferFrames;
+        voices = new Voice[voiceCount];
+        for (int n = 0; n < voiceCount; n++) {
+            voices[n] = new Voice();
+        }
+        budget = voiceCount;
+        setCoalesceMillis(DEFAULT_COALESCE);
+        mix = new float[bufferFrames * 2];
+        out = new byte[bufferFrames * 4];
+
+        //a command is late if it missed the buffer after the next one
+        commands = new AudioQueue(commandCount);
+        commands.setLateNanos((long)(2e9 * bufferFrames / sampleRate));
+    }
+
+    public float sampleRate() { return sampleRate; }
+    public int bufferFrames() { return bufferFrames; }
+    public int voiceCount() { return voices.length; }
+    public boolean running() { return running; }
+    public boolean silent() { return silent; }
+
+    //latency of one mix buffer in milliseconds
+    public double bufferMillis() { return bufferFrames * 1000.0 / sampleRate; }
+
+    //commands lost to a full queue, and carried out later than they should be
+    public long dropped() { return commands.dropped(); }
+    public long late() { return commands.late(); }
+    public AudioQueue commands() { return commands; }
+
+    //plays that joined a voice already playing, and plays left out
+    public long coalesced() { return coalesced; }
+    public long culled() { return culled; }
+
+    //most voices mixed at once, up to the number made
+    public void setVoiceBudget(int voices) {
+        budget = Math.max(1, Math.min(voices, this.voices.length));
+    }
+    public int voiceBudget() { return budget; }
+
+    //starts of the same sound this close together play as one; 0 turns it off
+    public void setCoalesceMillis(double millis) {
+        coalesceFrames = (int)(millis * sampleRate / 1000.0);
+    }
+    public double coalesceMillis() { return coalesceFrames * 1000.0 / sampleRate; }
+
+    /*****************************************************
+     * decode a sound file once; later calls for the same
+     * name return the same sample. returns null if the file
+     * can't be read.
+     *****************************************************/
+    public synchronized AudioSample load(String resource) {
+        AudioSample sample = samples.get(resource);
+        if (sample == null) {
+            try {
+                sample = AudioSample.load(resource, sampleRate);
+            }
+            catch (Exception e) {
+                System.out.println("Can't load sound " + resource + ": " + e.getMessage());
+                return null;
+            }
+            samples.put(resource, sample);
+        }
+        return sample;
+    }
+
+    /*****************************************************
+     * start a sample playing with a gain (1 is full volume)
+     * and a pan from -1 (left) to 1 (right), repeating it
+     * the given number of extra times or forever if loop is
+     * set. returns a number naming the voice for stop and
+     * setGain, which stays valid until the voice is reused,
+     * or 0 if the command queue was full or the mixer is
+     * silent. a sound that is
+     * joined to another voice or culled has no voice, so its
+     * number names nothing.
+     *****************************************************/
+    public int play(AudioSample sample, float gain, float pan,
+        int repeat, boolean loop)
+    {
+        return play(sample, gain, pan, repeat, loop, 0, 0);
+    }
+
+    public int play(AudioSample sample, float gain, float pan,
+        int repeat, boolean loop, int priority, int limit)
+    {
+        return play(sample, gain, pan, repeat, loop, priority, limit, 0);
+    }
+
+    /*****************************************************
+     * play with a priority, higher winning a voice over
+     * lower, and a limit on the voices this sound may use
+     * at once (0 for no limit). the sound is the group, or
+     * the sample when the group is 0.
+     *****************************************************/
+    public int play(AudioSample sample, float gain, float pan,
+        int repeat, boolean loop, int priority, int limit, int group)
+    {
+        if (sample == null || sample.frames() == 0 || silent) return 0;
+        int id = nextId;
+        if (!commands.post(AudioQueue.PLAY, id, sample, gain, pan, repeat, loop,
+            priority, limit, group))
+            return 0;
+        nextId++;
+        return id;
+    }
+
+    //stop one voice started by play
+    public void stop(int id) {
+        if (!silent) commands.post(AudioQueue.STOP, id, null, 0f, 0f, 0, false, 0, 0, 0);
+    }
+
+    //stop every voice playing a sample, or every voice if it's null
+    public void stopAll(AudioSample sample) {
+        if (!silent) commands.post(AudioQueue.STOP_ALL, 0, sample, 0f, 0f, 0, false, 0, 0, 0);
+    }
+
+    //a number naming one sound apart from others made from the same sample
+    public int newGroup() { return nextGroup.getAndIncrement(); }
+
+    //stop every voice playing a group's sound; group 0 names none
+    public void stopGroup(int group) {
+        if (group == 0 || silent) return;
+        commands.post(AudioQueue.STOP_GROUP, 0, null, 0f, 0f, 0, false, 0, 0, group);
+    }
+
+    public void setGain(int id, float gain, float pan) {
+        if (!silent) commands.post(AudioQueue.GAIN, id, null, gain, pan, 0, false, 0, 0, 0);
+    }
+
+    //start or stop a voice looping; one that stops finishes its pass
+    public void setLoop(int id, boolean loop) {
+        if (!silent) commands.post(AudioQueue.LOOP, id, null, 0f, 0f, 0, loop, 0, 0, 0);
+    }
+
+    //number of voices playing after the last buffer was mixed
+    public int activeVoices() { return active; }
+
+    /*****************************************************
+     * carry out one command, on the mixer thread
+     *****************************************************/
+    private void execute(int type, int id, AudioSample sample, float gain,
+        float pan, int repeat, boolean loop, int priority, int limit, int group)
+    {
+        Voice voice;
+        switch (type) {
+        case AudioQueue.PLAY:
+            start(id, sample, gain, pan, repeat, loop, priority, limit, group);
+            break;
+        case AudioQueue.STOP:
+            voice = find(id);
+            if (voice != null) free(voice);
+            break;
+        case AudioQueue.STOP_ALL:
+            for (int n = 0; n < voices.length; n++) {
+                if (sample == null || voices[n].sample == sample) {
+                    free(voices[n]);
+                }
+            }
+            break;
+        case AudioQueue.STOP_GROUP:
+            for (int n = 0; n < voices.length; n++) {
+                //group 0 is every sound without one, not a sound
+                if (group != 0 && voices[n].group == group) free(voices[n]);
+            }
+            break;
+        case AudioQueue.GAIN:
+            voice = find(id);
+            if (voice != null) {
+                voice.pan = pan;
+                voice.power = gain * gain;
+                voice.peak = gain;
+                setVolume(voice, gain, pan);
+            }
+            break;
+        case AudioQueue.LOOP:
+            voice = find(id);
+            if (voice != null) voice.loop = loop;
+            break;
+        }
+    }
+
+    /*****************************************************
+     * open the output line and start the mixer thread;
+     * returns false, leaving the mixer silent, if there is
+     * no audio device
+     *****************************************************/
+    public synchronized boolean start() {
+        if (running) return true;
+        AudioFormat format = new AudioFormat(sampleRate, 16, 2, true, false);
+        try {
+            line = AudioSystem.getSourceDataLine(format);
+            //two mix buffers in the line, one playing while one is mixed
+            line.open(format, out.length * 2);
+        }
+        catch (LineUnavailableException e) {
+            return goSilent();
+        }
+        catch (IllegalArgumentException e) {
+            return goSilent();
+        }
+        catch (SecurityException e) {
+            return goSilent();
+        }
+        line.start();
+
+        silent = false;
+        running = true;
+        thread = new Thread(new Runnable() {
+            public void run() {
+                feed();
+            }
+        }, "audio mixer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+        return true;
+    }
+
+    //no line to play on: throw away what is queued and take no more
+    private boolean goSilent() {
+        line = null;
+        silent = true;
+        commands.clear();
+        return false;
+    }
+
+    //stop the mixer thread and close the line
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            if (!running) return;
+            running = false;
+            t = thread;
+            thread = null;
+        }
+        try {
+            t.join(1000);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        line.stop();
+        line.close();
+        line = null;
+    }
+
+    //mixer thread: mix a buffer, write it, repeat
+    private void feed() {
+        while (running) {
+            mix(bufferFrames);
+            toBytes(bufferFrames, out, 0);
+            //blocks until the line has room, which paces the loop
+            line.write(out, 0, bufferFrames * 4);
+        }
+    }
+
+    /*****************************************************
+     * offline mode: mix the given number of frames into a
+     * new byte array of 16 bit little-endian stereo, just as
+     * the mixer thread would send them to the line
+     *****************************************************/
+    public byte[] render(int frames) {
+        byte[] result = new byte[frames * 4];
+        render(result, frames);
+        return result;
+    }
+
+    public void render(byte[] result, int frames) {
+        if (running)
+            throw new IllegalStateException("the mixer thread is running");
+        //mixing offline takes commands again
+        silent = false;
+        for (int done = 0; done < frames; done += bufferFrames) {
+            int count = Math.min(bufferFrames, frames - done);
+            mix(count);
+            toBytes(count, result, done * 4);
+        }
+    }
+
+    /*****************************************************
+     * carry out the waiting commands, then add up the next
+     * frames of every active voice into the float mix buffer
+     *****************************************************/
+    private void mix(int frames) {
+        commands.drain(handler);
+        Arrays.fill(mix, 0, frames * 2, 0f);
+        int count = 0;
+        for (int n = 0; n < voices.length; n++) {
+            Voice v = voices[n];
+            if (v.sample != null) {
+                mixVoice(v, frames);
+                if (v.sample != null) count++;
+            }
+        }
+        active = count;
+    }
+
+    private void mixVoice(Voice v, int frames) {
+        float[] data = v.sample.data();
+        int length = v.sample.frames();
+        boolean stereo = v.sample.channels() == 2;
+        float left = v.left;
+        float right = v.right;
+
+        int done = 0;
+        while (done < frames) {
+            if (v.position >= length) {
+                //ran off the end: go round again or free the voice
+                if (v.loop || v.repeat > 0) {
+                    if (!v.loop) v.repeat--;
+                    v.position = 0;
+                }
+                else {
+                    free(v);
+                    return;
+                }
+            }
+            int count = Math.min(frames - done, length - v.position);
+            int o = done * 2;
+            int p = v.position;
+            if (stereo) {
+                for (int i = 0; i < count; i++) {
+                    mix[o++] += data[2 * p] * left;
+                    mix[o++] += data[2 * p + 1] * right;
+                    p++;
+                }
+            }
+            else {
+                for (int i = 0; i < count; i++) {
+                    float s = data[p++];
+                    mix[o++] += s * left;
+                    mix[o++] += s * right;
+                }
+            }
+            v.position = p;
+            done += count;
+        }
+    }
+
+    /*****************************************************
+     * give a new sound a voice: join it to the same sound
+     * started a moment ago, or take a free voice within the
+     * budgets, or else the lowest ranked and oldest voice
+     * (of its own sound, if it is at its limit) if that
+     * doesn't outrank the new sound
+     *****************************************************/
+    private void start(int id, AudioSample sample, float gain, float pan,
+        int repeat, boolean loop, int priority, int limit, int group)
+    {
+        Voice voice;
+        int window = coalesceFrames;
+        if (window > 0 && !loop && repeat == 0) {
+            for (int n = 0; n < voices.length; n++) {
+                voice = voices[n];
+                if (voice.sample != null && sameSound(voice, sample, group) && !voice.loop
+                    && voice.repeat == 0 && voice.position < window)
+                {
+                    //add the power of the copies, up to a limit
+                    voice.power += gain * gain;
+                    voice.peak = Math.max(voice.peak, gain);
+                    voice.priority = Math.max(voice.priority, priority);
+                    float joined = Math.min((float) Math.sqrt(voice.power),
+                        voice.peak * MAX_COALESCED);
+                    setVolume(voice, joined, voice.pan);
+                    coalesced++;
+                    return;
+                }
+            }
+        }
+
+        //voices in use, all of them and this sound's
+        int used = 0, same = 0;
+        Voice free = null, sameVictim = null, victim = null;
+        for (int n = 0; n < voices.length; n++) {
+            voice = voices[n];
+            if (voice.sample == null) {
+                if (free == null) free = voice;
+                continue;
+            }
+            used++;
+            if (sameSound(voice, sample, group)) {
+                same++;
+                if (outranked(voice, sameVictim)) sameVictim = voice;
+            }
+            if (outranked(voice, victim)) victim = voice;
+        }
+
+        if (limit > 0 && same >= limit) {
+            //the sound has all its voices: take its lowest ranked, oldest one
+            if (sameVictim.priority > priority) {
+                culled++;
+                return;
+            }
+            voice = sameVictim;
+        }
+        else if (used < budget && free != null) {
+            voice = free;
+        }
+        else if (victim != null && victim.priority <= priority) {
+            voice = victim;
+        }
+        else {
+            culled++;
+            return;
+        }
+
+        voice.sample = sample;
+        voice.position = 0;
+        voice.repeat = repeat;
+        voice.loop = loop;
+        voice.id = id;
+        voice.group = group;
+        voice.priority = priority;
+        voice.power = gain * gain;
+        voice.peak = gain;
+        voice.pan = pan;
+        setVolume(voice, gain, pan);
+    }
+
+    //clip the mix to 16 bits, little-endian
+    private void toBytes(int frames, byte[] dest, int offset) {
+        for (int i = 0; i < frames * 2; i++) {
+            float s = mix[i];
+            if (s > 1f) s = 1f;
+            else if (s < -1f) s = -1f;
+            int value = (int)(s * 32767f);
+            dest[offset++] = (byte) value;
+            dest[offset++] = (byte)(value >> 8);
+        }
+    }
+
+    //constant power pan: the center is 3dB down on each side
+    private static void setVolume(Voice voice, float gain, float pan) {
+        if (pan < -1f) pan = -1f;
+        else if (pan > 1f) pan = 1f;
+        double angle = (pan + 1) * Math.PI / 4;
+        voice.left = (float)(gain * Math.cos(angle));
+        voice.right = (float)(gain * Math.sin(angle));
+    }
+
+    //whether a voice is playing the sound named by a group, or by a sample
+    private static boolean sameSound(Voice voice, AudioSample sample, int group) {
+        if (voice.sample == null) return false;
+        if (group != 0) return voice.group == group;
+        return voice.group == 0 && voice.sample == sample;
+    }
+
+    //whether a voice should be taken over before the one picked so far
+    private static boolean outranked(Voice voice, Voice picked) {
+        return picked == null || voice.priority < picked.priority
+            || (voice.priority == picked.priority && voice.id < picked.id);
+    }
+
+    //a free voice names no play and no sound
+    private static void free(Voice voice) {
+        voice.sample = null;
+        voice.id = 0;
+        voice.group = 0;
+    }
+
+    private Voice find(int id) {
+        for (int n = 0; n < voices.length; n++) {
+            if (voices[n].id == id && voices[n].sample != null) return voices[n];
+        }
+        return null;
+    }
+
+    //one sample being played
+    private static class Voice {
+        AudioSample sample;
+        int position;
+        int repeat;
+        boolean loop;
+        int id;
+        int group;
+        int priority;
+        float left, right;
+        //pan, and the gains of the sounds joined into the voice
+        float pan, power, peak;
+    }
+}
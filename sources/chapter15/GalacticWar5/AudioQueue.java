@@ -0,0 +1,165 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* AudioQueue class
+*****************************************************/
+import java.util.concurrent.atomic.*;
+
+/*****************************************************
+ * a fixed ring of sound commands passed from one thread
+ * that posts them (the game loop) to one thread that takes
+ * them (the audio mixer). the fields of each command are
+ * kept in arrays made up front, so posting never allocates
+ * and neither side ever waits on a lock: each side only
+ * moves its own end of the ring, and the other end is read
+ * through an atomic counter. when the ring is full a post
+ * is dropped rather than held up.
+ *
+ * only one thread may post at a time and only one may
+ * take; a thread that has joined the poster may post after
+ * it.
+ *****************************************************/
+class AudioQueue {
+    //kinds of command
+    static final int PLAY = 1;
+    static final int STOP = 2;
+    static final int STOP_ALL = 3;
+    static final int GAIN = 4;
+    static final int LOOP = 5;
+    static final int STOP_GROUP = 6;
+
+    //receives each command as it is taken from the ring
+    interface Handler {
+        void command(int type, int id, AudioSample sample, float gain,
+            float pan, int repeat, boolean loop, int priority, int limit,
+            int group);
+    }
+
+    private int mask;
+    private int[] type;
+    private int[] id;
+    private AudioSample[] sample;
+    private float[] gain;
+    private float[] pan;
+    private int[] repeat;
+    private boolean[] loop;
+    private int[] priority;
+    private int[] limit;
+    private int[] group;
+    private long[] posted;
+
+    //commands posted and commands taken, counting up forever
+    private AtomicLong tail = new AtomicLong();
+    private AtomicLong head = new AtomicLong();
+
+    //a command waiting longer than this is counted as late
+    private volatile long lateNanos = Long.MAX_VALUE;
+
+    //each counter has only one writer
+    private volatile long dropped = 0;
+    private volatile long late = 0;
+
+    /*****************************************************
+     * a ring holding at least the given number of commands;
+     * the size is rounded up to a power of two
+     *****************************************************/
+    public AudioQueue(int capacity) {
+        int size = 1;
+        while (size < capacity) size <<= 1;
+        mask = size - 1;
+        type = new int[size];
+        id = new int[size];
+        sample = new AudioSample[size];
+        gain = new float[size];
+        pan = new float[size];
+        repeat = new int[size];
+        loop = new boolean[size];
+        priority = new int[size];
+        limit = new int[size];
+        group = new int[size];
+        posted = new long[size];
+    }
+
+    public int capacity() { return mask + 1; }
+
+    //commands waiting to be taken
+    public int size() { return (int)(tail.get() - head.get()); }
+
+    //commands lost because the ring was full
+    public long dropped() { return dropped; }
+
+    //commands taken after waiting longer than the late time
+    public long late() { return late; }
+
+    public void setLateNanos(long nanos) { lateNanos = nanos; }
+    public long lateNanos() { return lateNanos; }
+
+    /*****************************************************
+     * add a command to the ring; returns false, counting it
+     * as dropped, if the ring is full
+     *****************************************************/
+    public boolean post(int _type, int _id, AudioSample _sample, float _gain,
+        float _pan, int _repeat, boolean _loop, int _priority, int _limit,
+        int _group)
+    {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            dropped++;
+            return false;
+        }
+        int slot = (int) t & mask;
+        type[slot] = _type;
+        id[slot] = _id;
+        sample[slot] = _sample;
+        gain[slot] = _gain;
+        pan[slot] = _pan;
+        repeat[slot] = _repeat;
+        loop[slot] = _loop;
+        priority[slot] = _priority;
+        limit[slot] = _limit;
+        group[slot] = _group;
+        posted[slot] = System.nanoTime();
+        //publish the slot after its fields are written
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /*****************************************************
+     * throw away every waiting command without counting it;
+     * only the taking side may do this
+     *****************************************************/
+    public void clear() {
+        long h = head.get();
+        long t = tail.get();
+        for (; h < t; h++) {
+            sample[(int) h & mask] = null;
+        }
+        head.lazySet(t);
+    }
+
+    /*****************************************************
+     * pass every waiting command to the handler in the order
+     * they were posted; returns how many there were
+     *****************************************************/
+    public int drain(Handler handler) {
+        long h = head.get();
+        long t = tail.get();
+        if (h == t) return 0;
+        long now = System.nanoTime();
+        long lateAfter = lateNanos;
+        int count = 0;
+        for (; h < t; h++) {
+            int slot = (int) h & mask;
+            if (now - posted[slot] > lateAfter) late++;
+            AudioSample s = sample[slot];
+            //let go of the sample so the ring doesn't keep it
+            sample[slot] = null;
+            handler.command(type[slot], id[slot], s, gain[slot], pan[slot],
+                repeat[slot], loop[slot], priority[slot], limit[slot], group[slot]);
+            count++;
+            //hand the slot back to the poster
+            head.lazySet(h + 1);
+        }
+        return count;
+    }
+}
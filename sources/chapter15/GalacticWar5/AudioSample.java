@@ -0,0 +1,128 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* AudioSample class
+*****************************************************/
+import javax.sound.sampled.*;
+import java.io.*;
+import java.net.*;
+
+/*****************************************************
+ * a sound decoded once into floating point samples at the
+ * mixer's sample rate, ready to be mixed by AudioMixer.
+ * au, wav and aiff files in any PCM format are read; mono
+ * stays mono and only the first two channels of anything
+ * wider are kept.
+ * samples run from -1 to 1, interleaved left and right
+ * for stereo.
+ *****************************************************/
+class AudioSample {
+    private String name;
+    private float[] data;
+    private int channels;
+    private int frames;
+    private float sampleRate;
+
+    public AudioSample(String name, float[] data, int channels, float sampleRate) {
+        this.name = name;
+        this.data = data;
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        frames = data.length / channels;
+    }
+
+    public String name() { return name; }
+    public float[] data() { return data; }
+    public int channels() { return channels; }
+    public int frames() { return frames; }
+    public float sampleRate() { return sampleRate; }
+
+    //length in seconds
+    public double seconds() { return frames / (double) sampleRate; }
+
+    /*****************************************************
+     * decode a sound file found next to the game classes
+     *****************************************************/
+    public static AudioSample load(String resource, float sampleRate)
+        throws IOException, UnsupportedAudioFileException
+    {
+        URL url = AudioSample.class.getResource(resource);
+        if (url == null) throw new FileNotFoundException(resource);
+        return decode(resource, AudioSystem.getAudioInputStream(url), sampleRate);
+    }
+
+    public static AudioSample load(File file, float sampleRate)
+        throws IOException, UnsupportedAudioFileException
+    {
+        return decode(file.getName(), AudioSystem.getAudioInputStream(file), sampleRate);
+    }
+
+    /*****************************************************
+     * read a whole stream as 16 bit samples, turn them into
+     * floats and resample them to the given rate
+     *****************************************************/
+    public static AudioSample decode(String name, AudioInputStream in,
+        float sampleRate) throws IOException
+    {
+        AudioFormat source = in.getFormat();
+        int channels = Math.min(source.getChannels(), 2);
+        AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+            source.getSampleRate(), 16, source.getChannels(),
+            2 * source.getChannels(), source.getSampleRate(), false);
+        AudioInputStream decoded = in;
+        if (!source.matches(pcm)) {
+            decoded = AudioSystem.getAudioInputStream(pcm, in);
+        }
+
+        //read every byte, then close the stream
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        try {
+            while ((read = decoded.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        finally {
+            decoded.close();
+        }
+        byte[] raw = bytes.toByteArray();
+
+        //little-endian 16 bit to floats, keeping at most two channels
+        int inChannels = source.getChannels();
+        int inFrames = raw.length / (2 * inChannels);
+        float[] samples = new float[inFrames * channels];
+        for (int f = 0; f < inFrames; f++) {
+            for (int c = 0; c < channels; c++) {
+                int i = 2 * (f * inChannels + c);
+                short value = (short)((raw[i] & 0xFF) | (raw[i + 1] << 8));
+                samples[f * channels + c] = value / 32768f;
+            }
+        }
+
+        if (source.getSampleRate() != sampleRate) {
+            samples = resample(samples, channels, source.getSampleRate(), sampleRate);
+        }
+        return new AudioSample(name, samples, channels, sampleRate);
+    }
+
+    //change the sample rate by straight-line interpolation
+    private static float[] resample(float[] in, int channels, float from, float to) {
+        int inFrames = in.length / channels;
+        int outFrames = (int)((long) inFrames * to / from);
+        float[] out = new float[outFrames * channels];
+        double step = from / to;
+        for (int f = 0; f < outFrames; f++) {
+            double pos = f * step;
+            int i = (int) pos;
+            float t = (float)(pos - i);
+            int j = Math.min(i + 1, inFrames - 1);
+            for (int c = 0; c < channels; c++) {
+                float a = in[i * channels + c];
+                float b = in[j * channels + c];
+                out[f * channels + c] = a + (b - a) * t;
+            }
+        }
+        return out;
+    }
+}
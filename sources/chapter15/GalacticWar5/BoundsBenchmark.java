@@ -0,0 +1,109 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* BoundsBenchmark class
+*****************************************************/
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import javax.imageio.*;
+
+/*****************************************************
+ * tests every pair of a crowd of asteroid sprites for a
+ * collision, the way the game loop does, and prints the
+ * time and the bytes allocated per test for the cached
+ * bounds (collidesWith), the pixel masks (collidesPixels)
+ * and the old way of making a Rectangle for each sprite.
+ * the cached tests should allocate nothing at all, even
+ * with escape analysis turned off. once compiled, escape
+ * analysis may get rid of the old way's Rectangles too;
+ * run with -XX:-DoEscapeAnalysis to see what they cost
+ * when it can't.
+ *
+ * usage: java BoundsBenchmark [sprites]
+ *****************************************************/
+public class BoundsBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("This JVM can't count allocated bytes");
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        //the game's asteroid images, with their collision masks
+        String[] files = { "asteroid1.png", "medium1.png", "small1.png", "tiny1.png" };
+        Image[] images = new Image[files.length];
+        Canvas canvas = new Canvas();
+        for (int n = 0; n < files.length; n++) {
+            images[n] = ImageFormat.toCompatible(ImageIO.read(new File(files[n])));
+            CollisionMask.register(images[n], canvas);
+        }
+
+        //a screen full of asteroids at random places and angles
+        Graphics2D g = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB).createGraphics();
+        Random rand = new Random(1);
+        Sprite[] sprites = new Sprite[count];
+        for (int n = 0; n < count; n++) {
+            sprites[n] = new Sprite(canvas, g);
+            sprites[n].setImage(images[rand.nextInt(images.length)]);
+            sprites[n].setPosition(rand.nextInt(800), rand.nextInt(600));
+            sprites[n].setFaceAngle(rand.nextInt(360));
+        }
+        long pairs = (long) count * (count - 1) / 2;
+
+        //warm up every kind of test first, so compiling them is done
+        String[] names = { "collidesWith", "collidesPixels", "getBounds().intersects" };
+        for (int round = 0; round < 20; round++) {
+            for (int kind = 0; kind < names.length; kind++) test(sprites, kind);
+        }
+
+        //best of five rounds for each; the bytes are the most any round took
+        for (int kind = 0; kind < names.length; kind++) {
+            long best = Long.MAX_VALUE, bytes = 0;
+            int hits = 0;
+            for (int round = 0; round < 5; round++) {
+                long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+                long start = System.nanoTime();
+                hits = test(sprites, kind);
+                long took = System.nanoTime() - start;
+                allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId())
+                    - allocated;
+                best = Math.min(best, took);
+                bytes = Math.max(bytes, allocated);
+            }
+            System.out.println(names[kind] + ": " + round(best / (double) pairs)
+                + " ns and " + round(bytes / (double) pairs) + " bytes per test ("
+                + bytes + " bytes for " + pairs + " tests), " + hits + " hits");
+        }
+    }
+
+    //test every pair once
+    private static int test(Sprite[] sprites, int kind) {
+        int hits = 0;
+        for (int i = 0; i < sprites.length; i++) {
+            for (int j = i + 1; j < sprites.length; j++) {
+                boolean hit;
+                if (kind == 0)
+                    hit = sprites[i].collidesWith(sprites[j]);
+                else if (kind == 1)
+                    hit = sprites[i].collidesPixels(sprites[j]);
+                else
+                    hit = sprites[i].getBounds().intersects(sprites[j].getBounds());
+                if (hit) hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
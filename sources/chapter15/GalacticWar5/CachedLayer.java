@@ -0,0 +1,59 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* CachedLayer class
+*****************************************************/
+import java.awt.*;
+import java.awt.image.*;
+
+/*****************************************************
+ * a see-through image covering part of the screen that
+ * holds things which rarely change, such as the score and
+ * meters. it is drawn into only when what it shows has
+ * changed and otherwise put on the screen with one blit.
+ * callers draw into it in screen coordinates.
+ *****************************************************/
+class CachedLayer {
+    private BufferedImage image;
+    private int x, y;
+    private boolean valid = false;
+
+    public CachedLayer(int x, int y, int width, int height) {
+        this.x = x;
+        this.y = y;
+        image = ImageFormat.create(width, height, Transparency.TRANSLUCENT);
+    }
+
+    public BufferedImage image() { return image; }
+    public int x() { return x; }
+    public int y() { return y; }
+    public int width() { return image.getWidth(); }
+    public int height() { return image.getHeight(); }
+
+    //false once the layer must be drawn again
+    public boolean isValid() { return valid; }
+    public void invalidate() { valid = false; }
+
+    /*****************************************************
+     * clear the layer and return a graphics to draw into it
+     * with screen coordinates; pass it to end when done
+     *****************************************************/
+    public Graphics2D begin() {
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.setComposite(AlphaComposite.SrcOver);
+        g.translate(-x, -y);
+        return g;
+    }
+
+    public void end(Graphics2D g) {
+        g.dispose();
+        valid = true;
+    }
+
+    //put the layer on the screen
+    public void draw(Graphics2D g, ImageObserver observer) {
+        g.drawImage(image, x, y, observer);
+    }
+}
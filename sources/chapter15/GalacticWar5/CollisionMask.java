@@ -0,0 +1,217 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* CollisionMask class
+*****************************************************/
+import java.awt.*;
+import java.awt.image.*;
+import java.util.*;
+
+/*****************************************************
+ * one bit per pixel copy of an image's alpha channel,
+ * packed 64 pixels to a long, used to test whether two
+ * sprites really touch once their rectangles overlap.
+ * rotated copies are made at ANGLE_STEPS fixed angles when
+ * an image is registered, so the game loop never stalls
+ * building one.
+ *****************************************************/
+class CollisionMask {
+    //number of rotation angles a mask is kept at
+    static final int ANGLE_STEPS = 64;
+
+    //pixels at least this opaque are solid
+    static final int ALPHA_THRESHOLD = 64;
+
+    //masks made for loaded images, looked up by image
+    private static IdentityHashMap<Image, CollisionMask> masks =
+        new IdentityHashMap<Image, CollisionMask>();
+
+    //size of the mask and its offset from the sprite's top-left corner
+    private int width, height;
+    private int offsetX, offsetY;
+
+    //packed rows of bits, lowest bit first
+    private int words;
+    private long[] bits;
+
+    //rotated copies of the upright mask
+    private CollisionMask[] rotations;
+
+    private CollisionMask(int width, int height, int offsetX, int offsetY) {
+        this.width = width;
+        this.height = height;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        words = (width + 63) >>> 6;
+        bits = new long[Math.max(1, words * height)];
+    }
+
+    public int width() { return width; }
+    public int height() { return height; }
+    public int offsetX() { return offsetX; }
+    public int offsetY() { return offsetY; }
+
+    //returns true if the pixel at x,y is solid
+    public boolean get(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return false;
+        return (bits[y * words + (x >>> 6)] & (1L << (x & 63))) != 0;
+    }
+
+    private void set(int x, int y) {
+        bits[y * words + (x >>> 6)] |= 1L << (x & 63);
+    }
+
+    /*****************************************************
+     * build the mask for an image and remember it so
+     * forImage can find it later
+     *****************************************************/
+    public static CollisionMask register(Image image, Component observer) {
+        if (image == null) return null;
+        int w = image.getWidth(observer);
+        int h = image.getHeight(observer);
+        if (w <= 0 || h <= 0) return null;
+
+        //copy the pixels so the alpha channel can be read
+        BufferedImage pixels;
+        if (image instanceof BufferedImage
+            && ((BufferedImage)image).getType() == BufferedImage.TYPE_INT_ARGB) {
+            pixels = (BufferedImage) image;
+        }
+        else {
+            pixels = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = pixels.createGraphics();
+            g.drawImage(image, 0, 0, observer);
+            g.dispose();
+        }
+
+        CollisionMask mask = new CollisionMask(w, h, 0, 0);
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            pixels.getRGB(0, y, w, 1, row, 0, w);
+            for (int x = 0; x < w; x++) {
+                if ((row[x] >>> 24) >= ALPHA_THRESHOLD) {
+                    mask.set(x, y);
+                }
+            }
+        }
+
+        mask.prepareRotations();
+        synchronized (masks) {
+            masks.put(image, mask);
+        }
+        return mask;
+    }
+
+    //returns the mask made for an image, or null if it has none
+    public static CollisionMask forImage(Image image) {
+        if (image == null) return null;
+        synchronized (masks) {
+            return masks.get(image);
+        }
+    }
+
+    //make every rotated copy of the mask
+    public void prepareRotations() {
+        for (int step = 1; step < ANGLE_STEPS; step++) {
+            rotated(step * 360.0 / ANGLE_STEPS);
+        }
+    }
+
+    /*****************************************************
+     * returns the mask turned to the closest of the fixed
+     * angles, rotated about the image's center the same
+     * way ImageEntity.transform rotates the image
+     *****************************************************/
+    public CollisionMask rotated(double angle) {
+        int step = (int)Math.round(angle * ANGLE_STEPS / 360.0) % ANGLE_STEPS;
+        if (step < 0) step += ANGLE_STEPS;
+        if (step == 0) return this;
+
+        if (rotations == null) {
+            rotations = new CollisionMask[ANGLE_STEPS];
+        }
+        if (rotations[step] == null) {
+            rotations[step] = rotate(step * 360.0 / ANGLE_STEPS);
+        }
+        return rotations[step];
+    }
+
+    private CollisionMask rotate(double angle) {
+        double rad = Math.toRadians(angle);
+        double cos = Math.cos(rad);
+        double sin = Math.sin(rad);
+
+        //size of the box that holds the turned image
+        int w = (int)Math.ceil(Math.abs(width * cos) + Math.abs(height * sin));
+        int h = (int)Math.ceil(Math.abs(width * sin) + Math.abs(height * cos));
+        int cx = width / 2;
+        int cy = height / 2;
+        CollisionMask mask = new CollisionMask(w, h, cx - w / 2, cy - h / 2);
+
+        //map each pixel of the new mask back into the upright one
+        for (int y = 0; y < h; y++) {
+            double ry = mask.offsetY + y + 0.5 - cy;
+            for (int x = 0; x < w; x++) {
+                double rx = mask.offsetX + x + 0.5 - cx;
+                int u = (int)Math.floor(cx + rx * cos + ry * sin);
+                int v = (int)Math.floor(cy - rx * sin + ry * cos);
+                if (get(u, v)) {
+                    mask.set(x, y);
+                }
+            }
+        }
+        return mask;
+    }
+
+    /*****************************************************
+     * returns true if two masks placed at the given screen
+     * positions share a solid pixel. rows are compared 64
+     * pixels at a time by shifting both into line and
+     * and-ing them together.
+     *****************************************************/
+    public static boolean overlap(CollisionMask a, int ax, int ay,
+        CollisionMask b, int bx, int by)
+    {
+        ax += a.offsetX;
+        ay += a.offsetY;
+        bx += b.offsetX;
+        by += b.offsetY;
+
+        //the area both masks cover
+        int left = Math.max(ax, bx);
+        int top = Math.max(ay, by);
+        int right = Math.min(ax + a.width, bx + b.width);
+        int bottom = Math.min(ay + a.height, by + b.height);
+        if (left >= right || top >= bottom) return false;
+
+        int span = right - left;
+        for (int y = top; y < bottom; y++) {
+            int rowA = (y - ay) * a.words;
+            int rowB = (y - by) * b.words;
+            int startA = left - ax;
+            int startB = left - bx;
+            for (int done = 0; done < span; done += 64) {
+                long bitsA = a.extract(rowA, startA + done);
+                long bitsB = b.extract(rowB, startB + done);
+                long both = bitsA & bitsB;
+                int left64 = span - done;
+                if (left64 < 64) {
+                    both &= (1L << left64) - 1;
+                }
+                if (both != 0) return true;
+            }
+        }
+        return false;
+    }
+
+    //64 bits of a row starting at any bit position
+    private long extract(int row, int start) {
+        int word = start >>> 6;
+        int shift = start & 63;
+        long value = bits[row + word] >>> shift;
+        if (shift != 0 && word + 1 < words) {
+            value |= bits[row + word + 1] << (64 - shift);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,131 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* DirtyRegion class
+*****************************************************/
+import java.util.*;
+
+/*****************************************************
+ * the parts of the screen that were drawn on, kept as a
+ * grid of square tiles so overlapping rectangles merge on
+ * their own. rectangles builds the fewest simple rectangles
+ * it can find that cover the marked tiles: runs of tiles
+ * along each row, joined with the run above when they line
+ * up. nothing is allocated once the region is made.
+ *****************************************************/
+class DirtyRegion {
+    //tile size in pixels
+    static final int TILE = 16;
+
+    private int width, height;
+    private int columns, rows;
+    private boolean[] tiles;
+    private boolean empty = true;
+
+    //rectangles found by the last call to rectangles
+    private int[] rectX, rectY, rectW, rectH;
+    private int count = 0;
+
+    public DirtyRegion(int width, int height) {
+        this.width = width;
+        this.height = height;
+        columns = (width + TILE - 1) / TILE;
+        rows = (height + TILE - 1) / TILE;
+        tiles = new boolean[columns * rows];
+        rectX = new int[64];
+        rectY = new int[64];
+        rectW = new int[64];
+        rectH = new int[64];
+    }
+
+    public boolean isEmpty() { return empty; }
+
+    //mark every tile a rectangle touches
+    public void add(int x, int y, int w, int h) {
+        if (w <= 0 || h <= 0) return;
+        int c0 = Math.max(0, x / TILE);
+        int r0 = Math.max(0, y / TILE);
+        int c1 = Math.min(columns - 1, (x + w - 1) / TILE);
+        int r1 = Math.min(rows - 1, (y + h - 1) / TILE);
+        if (x + w <= 0 || y + h <= 0 || c0 > c1 || r0 > r1) return;
+        for (int r = r0; r <= r1; r++) {
+            int row = r * columns;
+            for (int c = c0; c <= c1; c++) {
+                tiles[row + c] = true;
+            }
+        }
+        empty = false;
+    }
+
+    //mark the whole screen
+    public void addAll() {
+        Arrays.fill(tiles, true);
+        empty = false;
+    }
+
+    //mark every tile marked in another region of the same size
+    public void add(DirtyRegion other) {
+        if (other.empty) return;
+        for (int n = 0; n < tiles.length; n++) {
+            tiles[n] |= other.tiles[n];
+        }
+        empty = false;
+    }
+
+    public void clear() {
+        if (empty) return;
+        Arrays.fill(tiles, false);
+        empty = true;
+    }
+
+    /*****************************************************
+     * work out the rectangles covering the marked tiles,
+     * clipped to the screen, and return how many there are
+     *****************************************************/
+    public int rectangles() {
+        count = 0;
+        if (empty) return 0;
+        for (int r = 0; r < rows; r++) {
+            int row = r * columns;
+            int c = 0;
+            while (c < columns) {
+                if (!tiles[row + c]) {
+                    c++;
+                    continue;
+                }
+                int start = c;
+                while (c < columns && tiles[row + c]) c++;
+                addRun(start * TILE, r * TILE,
+                    Math.min(c * TILE, width) - start * TILE,
+                    Math.min((r + 1) * TILE, height) - r * TILE);
+            }
+        }
+        return count;
+    }
+
+    public int rectX(int n) { return rectX[n]; }
+    public int rectY(int n) { return rectY[n]; }
+    public int rectWidth(int n) { return rectW[n]; }
+    public int rectHeight(int n) { return rectH[n]; }
+
+    //extend the rectangle ending just above a run if it lines up
+    private void addRun(int x, int y, int w, int h) {
+        for (int n = count - 1; n >= 0; n--) {
+            if (rectX[n] == x && rectW[n] == w && rectY[n] + rectH[n] == y) {
+                rectH[n] += h;
+                return;
+            }
+        }
+        if (count == rectX.length) {
+            rectX = Arrays.copyOf(rectX, count * 2);
+            rectY = Arrays.copyOf(rectY, count * 2);
+            rectW = Arrays.copyOf(rectW, count * 2);
+            rectH = Arrays.copyOf(rectH, count * 2);
+        }
+        rectX[count] = x;
+        rectY[count] = y;
+        rectW[count] = w;
+        rectH[count] = h;
+        count++;
+    }
+}
@@ -0,0 +1,100 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* FrameCache class
+*****************************************************/
+import java.awt.*;
+import java.awt.image.*;
+import java.util.*;
+
+/*****************************************************
+ * shared store of animation frames. each tiled sprite
+ * sheet is cut into separate frame images the first time
+ * it is used, and every sprite animating from that sheet
+ * draws the same frames. the frames must not be drawn on.
+ *****************************************************/
+class FrameCache {
+    //frames already cut, keyed by sheet and frame layout
+    private static HashMap<Key, BufferedImage[]> cache =
+        new HashMap<Key, BufferedImage[]>();
+
+    /*****************************************************
+     * returns the frames of a sheet, slicing it on first use
+     *****************************************************/
+    public static synchronized BufferedImage[] frames(Image sheet, int columns,
+        int total, int width, int height)
+    {
+        Key key = new Key(sheet, columns, total, width, height);
+        BufferedImage[] frames = cache.get(key);
+        if (frames == null) {
+            frames = slice(sheet, columns, total, width, height);
+            cache.put(key, frames);
+        }
+        return frames;
+    }
+
+    //slice a sheet ahead of time so the first explosion doesn't stall
+    public static void preload(Image sheet, int columns, int total,
+        int width, int height)
+    {
+        frames(sheet, columns, total, width, height);
+    }
+
+    //drop every cached frame
+    public static synchronized void clear() {
+        cache.clear();
+    }
+
+    /*****************************************************
+     * copy each frame of the sheet into its own image
+     *****************************************************/
+    private static BufferedImage[] slice(Image sheet, int columns, int total,
+        int width, int height)
+    {
+        BufferedImage[] frames = new BufferedImage[total];
+        int transparency = ImageFormat.transparency(sheet);
+        for (int n = 0; n < total; n++) {
+            int frameX = (n % columns) * width;
+            int frameY = (n / columns) * height;
+            frames[n] = ImageFormat.create(width, height, transparency);
+            Graphics2D g = frames[n].createGraphics();
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(sheet, 0, 0, width, height, frameX, frameY,
+                frameX + width, frameY + height, null);
+            g.dispose();
+        }
+        return frames;
+    }
+
+    /*****************************************************
+     * cache key; sheets are compared by identity because the
+     * same file may be loaded into different images
+     *****************************************************/
+    private static class Key {
+        Image sheet;
+        int columns, total, width, height;
+
+        Key(Image sheet, int columns, int total, int width, int height) {
+            this.sheet = sheet;
+            this.columns = columns;
+            this.total = total;
+            this.width = width;
+            this.height = height;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return sheet == k.sheet && columns == k.columns && total == k.total
+                && width == k.width && height == k.height;
+        }
+
+        public int hashCode() {
+            int h = System.identityHashCode(sheet);
+            h = h * 31 + columns;
+            h = h * 31 + total;
+            h = h * 31 + width;
+            return h * 31 + height;
+        }
+    }
+}
@@ -49,6 +49,10 @@ public class GalacticWar extends Game {
     boolean showBounds = false;
     boolean collisionTesting = true;
 
+    //how sprites are drawn: straight into the back buffer, or
+    //through Graphics2D
+    int blitMode = RasterBlitter.BLEND;
+
     //define the images used in the game
     ImageEntity background;
     ImageEntity bulletImage;
@@ -75,19 +79,54 @@ public class GalacticWar extends Game {
     int firepower = 1;
     int gameState = GAME_MENU;
 
-    //create a random number generator
-    Random rand = new Random();
+    //the engine's random number generator, which it seeds
+    //so recorded sessions can be replayed
+    Random rand = random();
 
-    //used to make ship temporarily invulnerable
+    //tick the ship was last made invulnerable on
     long collisionTimer = 0;
 
+    //fonts and colors for the screens and the hud
+    final Color TITLE_RED = new Color(200, 30, 30);
+    Font titleFont = new Font("Verdana", Font.BOLD, 36);
+    Font controlsFont = new Font("Times New Roman", Font.ITALIC | Font.BOLD, 20);
+    Font startFont = new Font("Ariel", Font.BOLD, 24);
+    Font scoreFont = new Font("Verdana", Font.BOLD, 24);
+    Font restartFont = new Font("Arial", Font.CENTER_BASELINE, 24);
+
+    //cached layers for the menu, the hud along the top of the
+    //screen and the game over message, and what the hud shows
+    CachedLayer menuLayer = new CachedLayer(160, 150, 480, 440);
+    CachedLayer hudLayer = new CachedLayer(0, 0, SCREENWIDTH, 56);
+    CachedLayer gameOverLayer = new CachedLayer(160, 150, 480, 360);
+    int hudScore, hudHighscore, hudHealth, hudShield, hudFirepower;
+
     //some key input tracking variables
     boolean keyLeft, keyRight, keyUp, keyFire, keyB, keyC, keyShield;
 
+    //pools of reusable sprites for everything spawned during play
+    SpritePool bulletPool;
+    SpritePool asteroidPool;
+    SpritePool explosionPool;
+    SpritePool powerupPool;
+
+    //loads the game's images in parallel
+    AssetLoader assets = new AssetLoader(this);
+
+    //bullets created by a single shot, emptied once they are
+    //in the sprite list so pooled bullets aren't held here
+    AnimatedSprite[] bullets = new AnimatedSprite[6];
+
+    //render the music into the mixer instead of using the sequencer;
+    //the song takes a few seconds to render and about 70MB to hold
+    static final boolean RENDER_MUSIC = false;
+
     //sound effects and music
-    MidiSequence music = new MidiSequence();
-    SoundClip shoot = new SoundClip();
-    SoundClip explosion = new SoundClip();
+    MidiSequence music = RENDER_MUSIC ? new MidiSequence(audio()) : new MidiSequence();
+    //sound effects are mixed by the engine, so they can overlap
+    SoundClip shoot = new SoundClip(audio());
+    SoundClip explosion = new SoundClip(audio());
+    SoundClip shipExplosion = new SoundClip(audio());
 
 
    /*****************************************************
@@ -105,88 +144,124 @@ public class GalacticWar extends Game {
         music.load("music.mid");
         shoot.load("shoot.au");
         explosion.load("explode.au");
+        shipExplosion.load("explode.au");
+
+        //losing the ship is heard over asteroids, and both over firing
+        shipExplosion.setPriority(2);
+        explosion.setPriority(1);
+        explosion.setVoiceLimit(8);
+        shoot.setVoiceLimit(4);
+        audio().setVoiceBudget(16);
+
+        //start loading all of the images at once; the ones sprites
+        //collide with also get a collision mask
 
         //load the health/shield bars
         barFrame = new ImageEntity(this);
-        barFrame.load("barframe.png");
+        assets.load(barFrame, "barframe.png");
         barImage[0] = new ImageEntity(this);
-        barImage[0].load("bar_health.png");
+        assets.load(barImage[0], "bar_health.png");
         barImage[1] = new ImageEntity(this);
-        barImage[1].load("bar_shield.png");
+        assets.load(barImage[1], "bar_shield.png");
 
         //load powerups
         powerupShield = new ImageEntity(this);
-        powerupShield.load("powerup_shield2.png");
+        assets.load(powerupShield, "powerup_shield2.png", true);
         powerupHealth = new ImageEntity(this);
-        powerupHealth.load("powerup_cola.png");
+        assets.load(powerupHealth, "powerup_cola.png", true);
         powerup250 = new ImageEntity(this);
-        powerup250.load("powerup_250.png");
+        assets.load(powerup250, "powerup_250.png", true);
         powerup500 = new ImageEntity(this);
-        powerup500.load("powerup_500.png");
+        assets.load(powerup500, "powerup_500.png", true);
         powerup1000 = new ImageEntity(this);
-        powerup1000.load("powerup_1000.png");
+        assets.load(powerup1000, "powerup_1000.png", true);
         powerupGun = new ImageEntity(this);
-        powerupGun.load("powerup_gun.png");
+        assets.load(powerupGun, "powerup_gun.png", true);
 
         //load the background image
         background = new ImageEntity(this);
-        background.load("bluespace.png");
+        assets.load(background, "bluespace.png");
 
-        //create the ship sprite--first in the sprite list
+        //load the ship images
         shipImage[0] = new ImageEntity(this);
-        shipImage[0].load("spaceship.png");
+        assets.load(shipImage[0], "spaceship.png", true);
         shipImage[1] = new ImageEntity(this);
-        shipImage[1].load("ship_thrust.png");
+        assets.load(shipImage[1], "ship_thrust.png", true);
         shipImage[2] = new ImageEntity(this);
-        shipImage[2].load("ship_shield.png");
-
-        AnimatedSprite ship = new AnimatedSprite(this, graphics());
-        ship.setSpriteType(SPRITE_SHIP);
-        ship.setImage(shipImage[0].getImage());
-        ship.setFrameWidth(ship.imageWidth());
-        ship.setFrameHeight(ship.imageHeight());
-        ship.setPosition(new Point2D(SCREENWIDTH/2, SCREENHEIGHT/2));
-        ship.setAlive(true);
-        //start ship off as invulnerable
-        ship.setState(STATE_EXPLODING);
-        collisionTimer = System.currentTimeMillis();
-        sprites().add(ship);
+        assets.load(shipImage[2], "ship_shield.png", true);
 
         //load the bullet sprite image
         bulletImage = new ImageEntity(this);
-        bulletImage.load("plasmashot.png");
+        assets.load(bulletImage, "plasmashot.png", true);
 
         //load the explosion sprite image
         explosions[0] = new ImageEntity(this);
-        explosions[0].load("explosion.png");
+        assets.load(explosions[0], "explosion.png");
         explosions[1] = new ImageEntity(this);
-        explosions[1].load("explosion2.png");
+        assets.load(explosions[1], "explosion2.png");
 
         //load the big asteroid images (5 total)
         for (int n = 0; n<5; n++) {
             bigAsteroids[n] = new ImageEntity(this);
             String fn = "asteroid" + (n+1) + ".png";
-            bigAsteroids[n].load(fn);
+            assets.load(bigAsteroids[n], fn, true);
         }
         //load the medium asteroid images (2 total)
         for (int n = 0; n<2; n++) {
             medAsteroids[n] = new ImageEntity(this);
             String fn = "medium" + (n+1) + ".png";
-            medAsteroids[n].load(fn);
+            assets.load(medAsteroids[n], fn, true);
         }
         //load the small asteroid images (3 total)
         for (int n = 0; n<3; n++) {
             smlAsteroids[n] = new ImageEntity(this);
             String fn = "small" + (n+1) + ".png";
-            smlAsteroids[n].load(fn);
+            assets.load(smlAsteroids[n], fn, true);
         }
         //load the tiny asteroid images (4 total)
         for (int n = 0; n<4; n++) {
             tnyAsteroids[n] = new ImageEntity(this);
             String fn = "tiny" + (n+1) + ".png";
-            tnyAsteroids[n].load(fn);
+            assets.load(tnyAsteroids[n], fn, true);
         }
 
+        //that's every image; wait once for them all to finish
+        assets.finishSubmitting();
+        assets.waitForAll();
+
+        //the background never changes, so dirty rectangle
+        //mode can restore the screen from it
+        setBackdrop(background.getImage());
+
+        //create the ship sprite--first in the sprite list
+        AnimatedSprite ship = new AnimatedSprite(this, graphics());
+        ship.setSpriteType(SPRITE_SHIP);
+        ship.setBlitMode(blitMode);
+        ship.setImage(shipImage[0].getImage());
+        ship.setFrameWidth(ship.imageWidth());
+        ship.setFrameHeight(ship.imageHeight());
+        warp(ship);
+        ship.setPosition(new Point2D(SCREENWIDTH/2, SCREENHEIGHT/2));
+        ship.setAlive(true);
+        //start ship off as invulnerable
+        ship.setState(STATE_EXPLODING);
+        collisionTimer = ticks();
+        sprites().add(ship);
+
+        //cut the explosion frames now rather than on the first blast
+        FrameCache.preload(explosions[0].getImage(), 4, 16, 96, 96);
+        FrameCache.preload(explosions[1].getImage(), 4, 8, 40, 40);
+
+        //create the sprite pools ahead of the first wave
+        bulletPool = new SpritePool(this, graphics(), 128);
+        bulletPool.fill(32);
+        asteroidPool = new SpritePool(this, graphics(), 256);
+        asteroidPool.fill(64);
+        explosionPool = new SpritePool(this, graphics(), 64);
+        explosionPool.fill(16);
+        powerupPool = new SpritePool(this, graphics(), 32);
+        powerupPool.fill(8);
+
         //start off in pause mode
         pauseGame();
     }
@@ -197,7 +272,7 @@ public class GalacticWar extends Game {
         music.play();
 
         //save the ship for the restart
-        AnimatedSprite ship = (AnimatedSprite) sprites().get(0);
+        AnimatedSprite ship = sprites().get(0);
 
         //wipe out the sprite list to start over!
         sprites().clear();
@@ -206,7 +281,7 @@ public class GalacticWar extends Game {
         ship.setPosition(new Point2D(SCREENWIDTH/2, SCREENHEIGHT/2));
         ship.setAlive(true);
         ship.setState(STATE_EXPLODING);
-        collisionTimer = System.currentTimeMillis();
+        collisionTimer = ticks();
         ship.setVelocity(new Point2D(0, 0));
         sprites().add(ship);
 
@@ -240,68 +315,144 @@ public class GalacticWar extends Game {
     void gameRefreshScreen() {
         Graphics2D g2d = graphics();
 
-        //draw the background
-        g2d.drawImage(background.getImage(),0,0,SCREENWIDTH-1,SCREENHEIGHT-1,this);
+        //draw the background, unless the engine has already
+        //put it back where the last frame drew
+        if (!dirtyFrame() && background.getImage() != null) {
+            g2d.drawImage(background.getImage(), 0, 0, this);
+        }
 
-        //what is the game state?
-        if (gameState == GAME_MENU) {
-            g2d.setFont(new Font("Verdana", Font.BOLD, 36));
+        //show a progress bar until the images are loaded
+        if (!assets.isDone()) {
+            markDirty(0, 0, SCREENWIDTH, SCREENHEIGHT);
             g2d.setColor(Color.BLACK);
-            g2d.drawString("GALACTIC WAR", 252, 202);
-            g2d.setColor(new Color(200,30,30));
-            g2d.drawString("GALACTIC WAR", 250, 200);
-
-            int x = 270, y = 15;
-            g2d.setFont(new Font("Times New Roman", Font.ITALIC | Font.BOLD, 20));
-            g2d.setColor(Color.YELLOW);
-            g2d.drawString("CONTROLS:", x, ++y*20);
-            g2d.drawString("ROTATE - Left/Right Arrows", x+20, ++y*20);
-            g2d.drawString("THRUST - Up Arrow", x+20, ++y*20);
-            g2d.drawString("SHIELD - Shift key (no scoring)", x+20, ++y*20);
-            g2d.drawString("FIRE - Ctrl key", x+20, ++y*20);
-
+            g2d.fillRect(0, 0, SCREENWIDTH, SCREENHEIGHT);
             g2d.setColor(Color.WHITE);
-            g2d.drawString("POWERUPS INCREASE FIREPOWER!", 240, 480);
+            g2d.drawString("Loading " + assets.loaded() + " of " + assets.total(), 300, 280);
+            g2d.drawRect(300, 290, 200, 12);
+            g2d.fillRect(300, 290, (int)(200 * assets.progress()), 12);
+            return;
+        }
 
-            g2d.setFont(new Font("Ariel", Font.BOLD, 24));
-            g2d.setColor(Color.ORANGE);
-            g2d.drawString("Press ENTER to start", 280, 570);
+        //the menu, meters and score only change now and then,
+        //so they are drawn into layers and blitted
+        if (gameState == GAME_MENU) {
+            if (!menuLayer.isValid()) {
+                drawMenu(menuLayer);
+            }
+            drawLayer(g2d, menuLayer);
         }
         else if (gameState == GAME_RUNNING) {
-            //draw health/shield bars and meters
-            g2d.drawImage(barFrame.getImage(), SCREENWIDTH - 132, 18, this);
-            for (int n = 0; n < health; n++) {
-                int dx = SCREENWIDTH - 130 + n * 5;
-                g2d.drawImage(barImage[0].getImage(), dx, 20, this);
+            if (!hudLayer.isValid() || hudScore != score || hudHighscore != highscore
+                || hudHealth != health || hudShield != shield
+                || hudFirepower != firepower)
+            {
+                drawHud(hudLayer);
             }
-            g2d.drawImage(barFrame.getImage(), SCREENWIDTH - 132, 33, this);
-            for (int n = 0; n < shield; n++) {
-                int dx = SCREENWIDTH - 130 + n * 5;
-                g2d.drawImage(barImage[1].getImage(), dx, 35, this);
+            drawLayer(g2d, hudLayer);
+        }
+        else if (gameState == GAME_OVER) {
+            if (!gameOverLayer.isValid()) {
+                drawGameOver(gameOverLayer);
             }
+            drawLayer(g2d, gameOverLayer);
+        }
+    }
 
-            //draw the bullet upgrades
-            for (int n = 0; n < firepower; n++) {
-                int dx = SCREENWIDTH - 220 + n * 13;
-                g2d.drawImage(powerupGun.getImage(), dx, 17, this);
-            }
+    //put a cached layer on the screen, the same way as the sprites,
+    //and mark it for dirty rectangle mode
+    private void drawLayer(Graphics2D g2d, CachedLayer layer) {
+        if (blitMode == RasterBlitter.JAVA2D)
+            layer.draw(g2d, this);
+        else
+            blit(layer.image(), layer.x(), layer.y());
+        markDirty(layer.x(), layer.y(), layer.width(), layer.height());
+    }
 
-            //display the score
-            g2d.setFont(new Font("Verdana", Font.BOLD, 24));
-            g2d.setColor(Color.WHITE);
-            g2d.drawString("" + score, 20, 40);
-            g2d.setColor(Color.RED);
-            g2d.drawString("" + highscore, 350, 40);
+    /*****************************************************
+     * draw the title and controls into the menu layer
+     *****************************************************/
+    private void drawMenu(CachedLayer layer) {
+        Graphics2D g2d = layer.begin();
+        g2d.setFont(titleFont);
+        g2d.setColor(Color.BLACK);
+        g2d.drawString("GALACTIC WAR", 252, 202);
+        g2d.setColor(TITLE_RED);
+        g2d.drawString("GALACTIC WAR", 250, 200);
+
+        int x = 270, y = 15;
+        g2d.setFont(controlsFont);
+        g2d.setColor(Color.YELLOW);
+        g2d.drawString("CONTROLS:", x, ++y*20);
+        g2d.drawString("ROTATE - Left/Right Arrows", x+20, ++y*20);
+        g2d.drawString("THRUST - Up Arrow", x+20, ++y*20);
+        g2d.drawString("SHIELD - Shift key (no scoring)", x+20, ++y*20);
+        g2d.drawString("FIRE - Ctrl key", x+20, ++y*20);
+
+        g2d.setColor(Color.WHITE);
+        g2d.drawString("POWERUPS INCREASE FIREPOWER!", 240, 480);
+
+        g2d.setFont(startFont);
+        g2d.setColor(Color.ORANGE);
+        g2d.drawString("Press ENTER to start", 280, 570);
+        layer.end(g2d);
+        imageChanged(layer.image());
+    }
+
+    /*****************************************************
+     * draw the meters, bullet upgrades and score into the
+     * hud layer and remember what it shows
+     *****************************************************/
+    private void drawHud(CachedLayer layer) {
+        Graphics2D g2d = layer.begin();
+
+        //draw health/shield bars and meters
+        g2d.drawImage(barFrame.getImage(), SCREENWIDTH - 132, 18, this);
+        for (int n = 0; n < health; n++) {
+            int dx = SCREENWIDTH - 130 + n * 5;
+            g2d.drawImage(barImage[0].getImage(), dx, 20, this);
+        }
+        g2d.drawImage(barFrame.getImage(), SCREENWIDTH - 132, 33, this);
+        for (int n = 0; n < shield; n++) {
+            int dx = SCREENWIDTH - 130 + n * 5;
+            g2d.drawImage(barImage[1].getImage(), dx, 35, this);
         }
-        else if (gameState == GAME_OVER) {
-            g2d.setFont(new Font("Verdana", Font.BOLD, 36));
-            g2d.setColor(new Color(200, 30, 30));
-            g2d.drawString("GAME OVER", 270, 200);
 
-            g2d.setFont(new Font("Arial", Font.CENTER_BASELINE, 24));
-            g2d.setColor(Color.ORANGE);
-            g2d.drawString("Press ENTER to restart", 260, 500);
+        //draw the bullet upgrades
+        for (int n = 0; n < firepower; n++) {
+            int dx = SCREENWIDTH - 220 + n * 13;
+            g2d.drawImage(powerupGun.getImage(), dx, 17, this);
         }
+
+        //display the score
+        g2d.setFont(scoreFont);
+        g2d.setColor(Color.WHITE);
+        g2d.drawString(Integer.toString(score), 20, 40);
+        g2d.setColor(Color.RED);
+        g2d.drawString(Integer.toString(highscore), 350, 40);
+        layer.end(g2d);
+        imageChanged(layer.image());
+
+        hudScore = score;
+        hudHighscore = highscore;
+        hudHealth = health;
+        hudShield = shield;
+        hudFirepower = firepower;
+    }
+
+    /*****************************************************
+     * draw the game over message into its layer
+     *****************************************************/
+    private void drawGameOver(CachedLayer layer) {
+        Graphics2D g2d = layer.begin();
+        g2d.setFont(titleFont);
+        g2d.setColor(TITLE_RED);
+        g2d.drawString("GAME OVER", 270, 200);
+
+        g2d.setFont(restartFont);
+        g2d.setColor(Color.ORANGE);
+        g2d.drawString("Press ENTER to restart", 260, 500);
+        layer.end(g2d);
+        imageChanged(layer.image());
     }
 
     /*****************************************************
@@ -311,19 +462,20 @@ public class GalacticWar extends Game {
         music.stop();
         shoot.stop();
         explosion.stop();
+        shipExplosion.stop();
     }
 
     /*****************************************************
      * spriteUpdate event passed by game engine
      *****************************************************/
     public void spriteUpdate(AnimatedSprite sprite) {
+        //the ship, bullets, asteroids and powerups are warped
+        //around the screen by the engine
         switch(sprite.spriteType()) {
         case SPRITE_SHIP:
-            warp(sprite);
             break;
 
         case SPRITE_BULLET:
-            warp(sprite);
             break;
 
         case SPRITE_EXPLOSION:
@@ -336,7 +488,6 @@ public class GalacticWar extends Game {
         case SPRITE_ASTEROID_MEDIUM:
         case SPRITE_ASTEROID_SMALL:
         case SPRITE_ASTEROID_TINY:
-            warp(sprite);
             break;
 
         case SPRITE_POWERUP_SHIELD:
@@ -345,7 +496,6 @@ public class GalacticWar extends Game {
         case SPRITE_POWERUP_500:
         case SPRITE_POWERUP_1000:
         case SPRITE_POWERUP_GUN:
-            warp(sprite);
             //make powerup animation wobble
             double rot = sprite.rotationRate();
             if (sprite.faceAngle() > 350) {
@@ -363,14 +513,14 @@ public class GalacticWar extends Game {
     /*****************************************************
      * spriteDraw event passed by game engine
      * called by the game class after each sprite is drawn
-     * to give you a chance to manipulate the sprite
+     * from the render snapshot, to draw extra details over it
      *****************************************************/
-    public void spriteDraw(AnimatedSprite sprite) {
+    public void spriteDraw(RenderSnapshot frame, int index) {
         if (showBounds) {
-            if (sprite.collided())
-                sprite.drawBounds(Color.RED);
+            if (frame.collided(index))
+                frame.drawBounds(index, graphics(), Color.RED);
             else
-                sprite.drawBounds(Color.BLUE);
+                frame.drawBounds(index, graphics(), Color.BLUE);
         }
     }
 
@@ -378,7 +528,7 @@ public class GalacticWar extends Game {
      * spriteDying event passed by game engine
      * called after a sprite's age reaches its lifespan
      * at which point it will be killed off, and then removed from
-     * the linked list. you can cancel the purging process here.
+     * the sprite list. you can cancel the purging process here.
      *****************************************************/
     public void spriteDying(AnimatedSprite sprite) {
     }
@@ -409,11 +559,11 @@ public class GalacticWar extends Game {
                         shield -= 1;
                     }
                     else { //***
-                        collisionTimer = System.currentTimeMillis();
-                        spr1.setVelocity(new Point2D(0, 0));
+                        collisionTimer = ticks();
+                        spr1.setVelocity(0, 0);
                         double x = spr1.position().X() - 10;
                         double y = spr1.position().Y() - 10;
-                        startBigExplosion(new Point2D(x, y));
+                        startBigExplosion(x, y, shipExplosion);
                         spr1.setState(STATE_EXPLODING);
                         //reduce ship health
                         health -= 1; //***
@@ -430,8 +580,7 @@ public class GalacticWar extends Game {
                 }
                 //make ship temporarily invulnerable
                 else if (spr1.state() == STATE_EXPLODING) {
-                    if (collisionTimer + 3000 <
-                        System.currentTimeMillis()) {
+                    if (collisionTimer + 3 * FRAMERATE < ticks()) {
                         spr1.setState(STATE_NORMAL);
                     }
                 }
@@ -512,6 +661,30 @@ public class GalacticWar extends Game {
             //toggle collision testing
             collisionTesting = !collisionTesting;
             break;
+        case KeyEvent.VK_P:
+            //toggle pixel-perfect collisions
+            setPixelCollisions(!pixelCollisions());
+            break;
+        case KeyEvent.VK_T:
+            //toggle the frame timing overlay
+            setTimingOverlay(!timingOverlay());
+            break;
+        case KeyEvent.VK_D:
+            //toggle dirty rectangle drawing
+            setDirtyRendering(!dirtyRendering());
+            break;
+        case KeyEvent.VK_X:
+            //toggle drawing sprites straight into the back buffer
+            blitMode = (blitMode == RasterBlitter.JAVA2D)
+                ? RasterBlitter.BLEND : RasterBlitter.JAVA2D;
+            for (int n = 0; n < sprites().size(); n++) {
+                sprites().get(n).setBlitMode(blitMode);
+            }
+            break;
+        case KeyEvent.VK_R:
+            //toggle the pre-rotated image cache
+            setRotationCache(rotationCache() == null ? new RotationCache() : null);
+            break;
         case KeyEvent.VK_SHIFT:
             if ((!keyUp) && (shield > 0))
                 keyShield = true;
@@ -616,15 +789,15 @@ public class GalacticWar extends Game {
      *****************************************************/
     private void spawnAsteroid(AnimatedSprite sprite) {
         //create a new asteroid sprite
-        AnimatedSprite ast = new AnimatedSprite(this, graphics());
+        AnimatedSprite ast = asteroidPool.acquire();
         ast.setAlive(true);
 
         //set pseudo-random position around source sprite
-        int w = sprite.getBounds().width;
-        int h = sprite.getBounds().height;
+        int w = sprite.imageWidth();
+        int h = sprite.imageHeight();
         double x = sprite.position().X() + w/2 + rand.nextInt(20)-40;
         double y = sprite.position().Y() + h/2 + rand.nextInt(20)-40;
-        ast.setPosition(new Point2D(x,y));
+        ast.setPosition(x, y);
 
         //set rotation and direction angles
         ast.setFaceAngle(rand.nextInt(360));
@@ -635,7 +808,7 @@ public class GalacticWar extends Game {
         double ang = ast.moveAngle() - 90;
         double velx = calcAngleMoveX(ang);
         double vely = calcAngleMoveY(ang);
-        ast.setVelocity(new Point2D(velx, vely));
+        ast.setVelocity(velx, vely);
 
         //set some size-specific properties
         switch(sprite.spriteType()) {
@@ -669,6 +842,8 @@ public class GalacticWar extends Game {
             ast.setFrameHeight(tnyAsteroids[i].height());
             break;
         }
+        warp(ast);
+        ast.setBlitMode(blitMode);
 
          //add the new asteroid to the sprite list
         sprites().add(ast);
@@ -683,14 +858,16 @@ public class GalacticWar extends Game {
         if (n > 12) return;
 
         //use this powerup sprite
-        AnimatedSprite spr = new AnimatedSprite(this, graphics());
+        AnimatedSprite spr = powerupPool.acquire();
         spr.setRotationRate(8);
-        spr.setPosition(sprite.position());
+        spr.setPosition(sprite.position().X(), sprite.position().Y());
         double velx = rand.nextDouble();
         double vely = rand.nextDouble();
-        spr.setVelocity(new Point2D(velx, vely));
+        spr.setVelocity(velx, vely);
         spr.setLifespan(1500);
         spr.setAlive(true);
+        warp(spr);
+        spr.setBlitMode(blitMode);
 
         //customize the sprite based on powerup type
         switch(rand.nextInt(6)) {
@@ -744,20 +921,22 @@ public class GalacticWar extends Game {
      *****************************************************/
     public void createAsteroid() {
         //create a new asteroid sprite
-        AnimatedSprite ast = new AnimatedSprite(this, graphics());
+        AnimatedSprite ast = asteroidPool.acquire();
         ast.setAlive(true);
         ast.setSpriteType(SPRITE_ASTEROID_BIG);
+        ast.setBlitMode(blitMode);
 
         //pick one of the random asteroid images
         int i = rand.nextInt(5);
         ast.setImage(bigAsteroids[i].getImage());
         ast.setFrameWidth(bigAsteroids[i].width());
         ast.setFrameHeight(bigAsteroids[i].height());
+        warp(ast);
 
         //set to a random position on the screen
         int x = rand.nextInt(SCREENWIDTH-128);
         int y = rand.nextInt(SCREENHEIGHT-128);
-        ast.setPosition(new Point2D(x, y));
+        ast.setPosition(x, y);
 
         //set rotation and direction angles
         ast.setFaceAngle(rand.nextInt(360));
@@ -768,7 +947,7 @@ public class GalacticWar extends Game {
         double ang = ast.moveAngle() - 90;
         double velx = calcAngleMoveX(ang);
         double vely = calcAngleMoveY(ang);
-        ast.setVelocity(new Point2D(velx, vely));
+        ast.setVelocity(velx, vely);
 
         //add the new asteroid to the sprite list
         sprites().add(ast);
@@ -795,8 +974,8 @@ public class GalacticWar extends Game {
     public void checkInput() {
         if (gameState != GAME_RUNNING) return;
 
-        //the ship is always the first sprite in the linked list
-        AnimatedSprite ship = (AnimatedSprite)sprites().get(0);
+        //the ship is always the first sprite in the sprite list
+        AnimatedSprite ship = sprites().get(0);
         if (keyLeft) {
             //left arrow rotates ship left 5 degrees
             ship.setFaceAngle(ship.faceAngle() - SHIPROTATION);
@@ -826,8 +1005,8 @@ public class GalacticWar extends Game {
      * increase the thrust of the ship based on facing angle
      *****************************************************/
     public void applyThrust() {
-        //the ship is always the first sprite in the linked list
-        AnimatedSprite ship = (AnimatedSprite)sprites().get(0);
+        //the ship is always the first sprite in the sprite list
+        AnimatedSprite ship = sprites().get(0);
 
         //up arrow adds thrust to ship (1/10 normal speed)
         ship.setMoveAngle(ship.faceAngle() - 90);
@@ -841,7 +1020,7 @@ public class GalacticWar extends Game {
         vely += calcAngleMoveY(ship.moveAngle()) * ACCELERATION;
         if (vely < -5) vely = -5;
         else if (vely > 5) vely = 5;
-        ship.setVelocity(new Point2D(velx, vely));
+        ship.setVelocity(velx, vely);
 
     }
 
@@ -849,9 +1028,7 @@ public class GalacticWar extends Game {
      * fire a bullet from the ship's position and orientation
      *****************************************************/
     public void fireBullet() {
-        //create the new bullet sprite
-        AnimatedSprite[] bullets = new AnimatedSprite[6];
-
+        //create the new bullet sprites
         switch(firepower) {
         case 1:
             bullets[0] = stockBullet();
@@ -929,6 +1106,9 @@ public class GalacticWar extends Game {
             break;
         }
 
+        //the sprite list owns them now
+        Arrays.fill(bullets, null);
+
         shoot.play();
 
     }
@@ -942,19 +1122,21 @@ public class GalacticWar extends Game {
         angle = sprite.moveAngle();
         double svx = calcAngleMoveX(angle) * BULLET_SPEED;
         double svy = calcAngleMoveY(angle) * BULLET_SPEED;
-        sprite.setVelocity(new Point2D(svx, svy));
+        sprite.setVelocity(svx, svy);
     }
 
      private AnimatedSprite stockBullet() {
-         //the ship is always the first sprite in the linked list
-         AnimatedSprite ship = (AnimatedSprite)sprites().get(0);
+         //the ship is always the first sprite in the sprite list
+         AnimatedSprite ship = sprites().get(0);
 
-         AnimatedSprite bul = new AnimatedSprite(this, graphics());
+         AnimatedSprite bul = bulletPool.acquire();
          bul.setAlive(true);
          bul.setImage(bulletImage.getImage());
          bul.setFrameWidth(bulletImage.width());
          bul.setFrameHeight(bulletImage.height());
+         warp(bul);
          bul.setSpriteType(SPRITE_BULLET);
+         bul.setBlitMode(blitMode);
          bul.setLifespan(90);
          bul.setFaceAngle(ship.faceAngle());
          bul.setMoveAngle(ship.faceAngle() - 90);
@@ -962,11 +1144,11 @@ public class GalacticWar extends Game {
          double angle = bul.moveAngle();
          double svx = calcAngleMoveX(angle) * BULLET_SPEED;
          double svy = calcAngleMoveY(angle) * BULLET_SPEED;
-         bul.setVelocity(new Point2D(svx, svy));
-         //set the bullet's starting position
-         double x = ship.center().X() - bul.imageWidth()/2;
-         double y = ship.center().Y() - bul.imageHeight()/2;
-         bul.setPosition(new Point2D(x,y));
+         bul.setVelocity(svx, svy);
+         //set the bullet's starting position at the ship's center
+         double x = ship.position().X() + ship.imageWidth()/2 - bul.imageWidth()/2;
+         double y = ship.position().Y() + ship.imageHeight()/2 - bul.imageHeight()/2;
+         bul.setPosition(x, y);
 
          return bul;
      }
@@ -975,9 +1157,16 @@ public class GalacticWar extends Game {
      * launch a big explosion at the passed location
      *****************************************************/
     public void startBigExplosion(Point2D point) {
+        startBigExplosion(point.X(), point.Y());
+    }
+    public void startBigExplosion(double x, double y) {
+        startBigExplosion(x, y, explosion);
+    }
+    public void startBigExplosion(double x, double y, SoundClip sound) {
         //create a new explosion at the passed location
-        AnimatedSprite expl = new AnimatedSprite(this,graphics());
+        AnimatedSprite expl = explosionPool.acquire();
         expl.setSpriteType(SPRITE_EXPLOSION);
+        expl.setBlitMode(blitMode);
         expl.setAlive(true);
         expl.setAnimImage(explosions[0].getImage());
         expl.setTotalFrames(16);
@@ -985,12 +1174,12 @@ public class GalacticWar extends Game {
         expl.setFrameWidth(96);
         expl.setFrameHeight(96);
         expl.setFrameDelay(2);
-        expl.setPosition(point);
+        expl.setPosition(x, y);
 
         //add the new explosion to the sprite list
         sprites().add(expl);
 
-        explosion.play();
+        sound.play();
     }
 
     /*****************************************************
@@ -998,8 +1187,9 @@ public class GalacticWar extends Game {
      *****************************************************/
     public void startSmallExplosion(Point2D point) {
         //create a new explosion at the passed location
-        AnimatedSprite expl = new AnimatedSprite(this,graphics());
+        AnimatedSprite expl = explosionPool.acquire();
         expl.setSpriteType(SPRITE_EXPLOSION);
+        expl.setBlitMode(blitMode);
         expl.setAlive(true);
         expl.setAnimImage(explosions[1].getImage());
         expl.setTotalFrames(8);
@@ -1007,7 +1197,7 @@ public class GalacticWar extends Game {
         expl.setFrameWidth(40);
         expl.setFrameHeight(40);
         expl.setFrameDelay(2);
-        expl.setPosition(point);
+        expl.setPosition(point.X(), point.Y());
 
         //add the new explosion to the sprite list
         sprites().add(expl);
@@ -1017,25 +1207,29 @@ public class GalacticWar extends Game {
     }
 
     /*****************************************************
-     * cause sprite to warp around the edges of the screen
+     * cause sprite to warp around the edges of the screen;
+     * the engine does the warping after each move, once the
+     * sprite is a whole frame past an edge
      *****************************************************/
     public void warp(AnimatedSprite spr) {
-        //create some shortcut variables
-        int w = spr.frameWidth()-1;
-        int h = spr.frameHeight()-1;
-
-        //wrap the sprite around the screen edges
-        if (spr.position().X() < 0-w)
-            spr.position().setX(SCREENWIDTH);
-        else if (spr.position().X() > SCREENWIDTH)
-            spr.position().setX(0-w);
-        if (spr.position().Y() < 0-h)
-            spr.position().setY(SCREENHEIGHT);
-        else if (spr.position().Y() > SCREENHEIGHT)
-            spr.position().setY(0-h);
+        spr.setWrapMargin(spr.frameWidth()-1, spr.frameHeight()-1);
     }
 
 
+    /*****************************************************
+     * mix the score and ship status into the engine's
+     * checksum of the game world
+     *****************************************************/
+    public long stateChecksum() {
+        long sum = super.stateChecksum();
+        sum = sum * 31 + score;
+        sum = sum * 31 + health;
+        sum = sum * 31 + shield;
+        sum = sum * 31 + firepower;
+        sum = sum * 31 + gameState;
+        return sum;
+    }
+
     /*****************************************************
      * increment the score and update high score if needed
      *****************************************************/
@@ -1,43 +1,144 @@
 /*****************************************************
 * Beginning Java Game Programming, 3rd Edition
 * by Jonathan S. Harbour
-* Applet Game Engine class
+* Game Engine class
 *****************************************************/
 
-import java.applet.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.*;
 import java.lang.System;
 import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.awt.geom.AffineTransform;
 
-abstract class Game extends Applet implements Runnable, KeyListener,
+abstract class Game extends Panel implements Runnable, KeyListener,
     MouseListener, MouseMotionListener {
 
     //the main game loop thread
     private Thread gameloop;
 
     //internal list of sprites
-    private LinkedList _sprites;
-    public LinkedList sprites() { return _sprites; }
+    private SpriteList _sprites;
+    public SpriteList sprites() { return _sprites; }
+
+    /*****************************************************
+     * keep the sprites' movement state in primitive arrays
+     * so each tick moves every sprite in one tight loop;
+     * this can be switched on or off at any time
+     *****************************************************/
+    public void useSpriteStore(boolean use) {
+        if (use == (_sprites.store() != null)) return;
+        _sprites.setStore(use ? new SpriteStore(_sprites.size() + 64,
+            screenWidth, screenHeight) : null);
+    }
+    public boolean usingSpriteStore() { return _sprites.store() != null; }
+
+    //render snapshots: the game loop fills the back one, the render
+    //thread draws the front one, and the newest waits in between
+    private RenderSnapshot backSnapshot = new RenderSnapshot();
+    private RenderSnapshot frontSnapshot = new RenderSnapshot();
+    private AtomicReference<RenderSnapshot> latestSnapshot =
+        new AtomicReference<RenderSnapshot>(new RenderSnapshot());
+    private AffineTransform drawTransform = new AffineTransform();
+
+    //draws sprites straight into the back buffer, made when first used
+    private RasterBlitter blitter;
+
+    //mixes every sound the game plays into one output line
+    private AudioMixer audio = new AudioMixer();
+    public AudioMixer audio() { return audio; }
+
+    //pre-rotated sprite images, or null to always draw with a transform
+    private volatile RotationCache rotations = new RotationCache();
+    public RotationCache rotationCache() { return rotations; }
+    public void setRotationCache(RotationCache cache) { rotations = cache; }
+
+    //collision broadphase rebuilt on every pass
+    private SpatialGrid grid = new SpatialGrid(64);
+
+    //slots of stored sprites that died of old age this tick
+    private int[] died = new int[64];
+
+    //compare image pixels once sprite rectangles overlap
+    private boolean pixelCollisions = true;
+    public boolean pixelCollisions() { return pixelCollisions; }
+    public void setPixelCollisions(boolean pixels) { pixelCollisions = pixels; }
 
     //screen and double buffer related variables
     private BufferedImage backbuffer;
     private Graphics2D g2d;
     private int screenWidth, screenHeight;
 
+    //dirty rectangle drawing: only the parts of the screen drawn
+    //on are put back from the backdrop and shown again
+    private volatile boolean dirtyRendering = false;
+    private volatile BufferedImage backdrop;
+    private DirtyRegion drawnLast, drawnNow, presented;
+    private boolean dirtyFrame = false;
+    private BufferedImage restoredFrom;
+
     //keep track of mouse position and buttons
     private Point2D mousePos = new Point2D(0,0);
     private boolean mouseButtons[] = new boolean[4];
 
-    //frame rate counters and other timing variables
+    //update and render rate counters and other timing variables
     private int _frameCount = 0;
     private int _frameRate = 0;
+    private int _updateCount = 0;
+    private int _updateRate = 0;
     private int desiredRate;
+    private int maxRenderRate;
+    private int maxCatchUp = 5;
     private long startTime = System.currentTimeMillis();
+    private long updateStartTime = System.currentTimeMillis();
+    private long _ticks = 0;
+
+    //how far between the last two ticks the next frame is drawn (0..1)
+    private volatile double renderAlpha = 1.0;
+
+    //phases of each tick and frame that are timed by the engine
+    static final int PHASE_UPDATE = 0;
+    static final int PHASE_COLLISION = 1;
+    static final int PHASE_TIMED_UPDATE = 2;
+    static final int PHASE_REFRESH = 3;
+    static final int PHASE_DRAW = 4;
+    static final int PHASE_PAINT = 5;
+    static final int PHASES = 6;
+    static final String[] PHASE_NAMES = { "update", "collision",
+        "timed update", "refresh", "draw", "paint" };
+
+    //nanosecond histograms for each phase
+    private TimingHistogram[] timings = new TimingHistogram[PHASES];
+
+    //optional on-screen display of the phase timings
+    private boolean timingOverlay = false;
+    private Font overlayFont = new Font("Monospaced", Font.PLAIN, 12);
+    private StringBuilder overlayText = new StringBuilder(64);
+    private char[] overlayChars = new char[64];
+
+    //component that hosts the game (an applet panel or nothing at all)
+    public Component applet() { return this; }
+
+    //random numbers for game logic; the seed is kept so a
+    //recorded session can be played back the same way
+    private long seed = System.nanoTime();
+    private Random random = new Random(seed);
+    public Random random() { return random; }
+    public long seed() { return seed; }
+    public void setSeed(long seed) {
+        this.seed = seed;
+        random.setSeed(seed);
+    }
+
+    //key events waiting for the next tick, packed as code << 1 | pressed
+    private int[] keyQueue = new int[64];
+    private int keyQueueCount = 0;
+    private int[] keyBatch = new int[64];
 
-    //local applet object
-    public Applet applet() { return this; }
+    //session being recorded or played back, if any
+    private Replay recording;
+    private Replay playback;
 
     //game pause state
     private boolean _gamePaused = false;
@@ -56,7 +157,7 @@ abstract class Game extends Applet implements Runnable, KeyListener,
     abstract void gameMouseUp();
     abstract void gameMouseMove();
     abstract void spriteUpdate(AnimatedSprite sprite);
-    abstract void spriteDraw(AnimatedSprite sprite);
+    abstract void spriteDraw(RenderSnapshot frame, int index);
     abstract void spriteDying(AnimatedSprite sprite);
     abstract void spriteCollision(AnimatedSprite spr1, AnimatedSprite spr2);
 
@@ -65,30 +166,147 @@ abstract class Game extends Applet implements Runnable, KeyListener,
      *****************************************************/
     public Game(int frameRate, int width, int height) {
         desiredRate = frameRate;
+        maxRenderRate = frameRate;
         screenWidth = width;
         screenHeight = height;
+        setSize(width, height);
+
+        for (int n = 0; n < PHASES; n++) {
+            timings[n] = new TimingHistogram();
+        }
     }
 
     //return g2d object so sub-class can draw things
     public Graphics2D graphics() { return g2d; }
 
-    //current frame rate
+    //measured frames drawn and ticks simulated per second;
+    //frameRate is the render rate, kept for existing games
     public int frameRate() { return _frameRate; }
+    public int renderRate() { return _frameRate; }
+    public int updateRate() { return _updateRate; }
+
+    //fixed number of ticks per second the world is stepped at
+    public int tickRate() { return desiredRate; }
+
+    //upper limit on frames drawn per second by the game loop
+    public int maxRenderRate() { return maxRenderRate; }
+    public void setMaxRenderRate(int rate) { maxRenderRate = rate; }
+
+    //most ticks run back to back before the loop drops time
+    public int maxCatchUp() { return maxCatchUp; }
+    public void setMaxCatchUp(int steps) { maxCatchUp = steps; }
+
+    //timing histogram for one of the PHASE_ values
+    public TimingHistogram phaseTiming(int phase) { return timings[phase]; }
+
+    //median, 99th percentile and worst time of a phase in nanoseconds
+    public long phaseP50(int phase) { return timings[phase].p50(); }
+    public long phaseP99(int phase) { return timings[phase].p99(); }
+    public long phaseMax(int phase) { return timings[phase].max(); }
+
+    //start collecting phase timings over again
+    public void resetPhaseTimings() {
+        for (int n = 0; n < PHASES; n++) {
+            timings[n].reset();
+        }
+    }
+
+    //show or hide the phase timing overlay
+    public boolean timingOverlay() { return timingOverlay; }
+    public void setTimingOverlay(boolean show) { timingOverlay = show; }
+
+    /*****************************************************
+     * only redraw and show the parts of the screen that
+     * changed. this needs a backdrop to restore them from,
+     * and a game that marks what it draws besides sprites
+     *****************************************************/
+    public boolean dirtyRendering() { return dirtyRendering; }
+    public void setDirtyRendering(boolean dirty) { dirtyRendering = dirty; }
+
+    //true while drawing a frame in dirty rectangle mode, when the
+    //backdrop has already been put back where it was drawn over
+    public boolean dirtyFrame() { return dirtyFrame; }
+
+    /*****************************************************
+     * the still background the screen is restored from; it
+     * is copied and scaled to the screen size once here
+     *****************************************************/
+    public void setBackdrop(Image image) {
+        if (image == null) {
+            backdrop = null;
+            return;
+        }
+        BufferedImage copy = ImageFormat.create(screenWidth, screenHeight,
+            Transparency.OPAQUE);
+        Graphics2D g = copy.createGraphics();
+        g.drawImage(image, 0, 0, screenWidth, screenHeight, null);
+        g.dispose();
+        backdrop = copy;
+    }
+    public BufferedImage backdrop() { return backdrop; }
+
+    /*****************************************************
+     * the blitter that writes into the back buffer, or null
+     * if the back buffer isn't in a format it can draw into
+     *****************************************************/
+    public RasterBlitter rasterBlitter() {
+        if (blitter == null && RasterBlitter.supports(backbuffer)) {
+            blitter = new RasterBlitter(backbuffer);
+        }
+        return blitter;
+    }
+
+    /*****************************************************
+     * draw an unrotated image into the back buffer, straight
+     * into its pixels when possible. an image that is drawn
+     * on afterwards must be passed to imageChanged.
+     *****************************************************/
+    public void blit(Image image, int x, int y) {
+        RasterBlitter b = rasterBlitter();
+        if (b == null || !b.draw(image, x, y, RasterBlitter.BLEND)) {
+            g2d.drawImage(image, x, y, this);
+        }
+    }
+
+    //forget what the blitter knew about an image's pixels
+    public void imageChanged(Image image) {
+        if (blitter != null) blitter.forget(image);
+    }
+
+    //tell dirty rectangle mode that part of the screen was drawn on
+    public void markDirty(int x, int y, int width, int height) {
+        if (dirtyFrame) {
+            drawnNow.add(x, y, width, height);
+        }
+    }
+
+    //interpolation factor used by the draw path
+    public double renderAlpha() { return renderAlpha; }
+    public void setRenderAlpha(double alpha) { renderAlpha = alpha; }
+
+    //number of ticks the game world has advanced
+    public long ticks() { return _ticks; }
+
+    //the back buffer that every frame is drawn into
+    public BufferedImage backbuffer() { return backbuffer; }
 
     //mouse buttons and movement
     public boolean mouseButton(int btn) { return mouseButtons[btn]; }
     public Point2D mousePosition() { return mousePos; }
 
     /*****************************************************
-     * applet init event method
+     * init event method, called by the host before start
      *****************************************************/
     public void init() {
         //create the back buffer and drawing surface
         backbuffer = new BufferedImage(screenWidth, screenHeight, BufferedImage.TYPE_INT_RGB);
         g2d = backbuffer.createGraphics();
+        drawnLast = new DirtyRegion(screenWidth, screenHeight);
+        drawnNow = new DirtyRegion(screenWidth, screenHeight);
+        presented = new DirtyRegion(screenWidth, screenHeight);
 
         //create the internal sprite list
-        _sprites = new LinkedList<AnimatedSprite>();
+        _sprites = new SpriteList();
 
         //start the input listeners
         addKeyListener(this);
@@ -100,41 +318,176 @@ abstract class Game extends Applet implements Runnable, KeyListener,
     }
 
     /*****************************************************
-     * applet update event method
+     * update event method, called by AWT after repaint
      *****************************************************/
     public void update(Graphics g) {
+        renderFrame();
+        if (dirtyFrame) {
+            paintDirty(g);
+        }
+        else {
+            paint(g);
+        }
+    }
+
+    /*****************************************************
+     * draw the current frame into the back buffer; this
+     * does not need a screen so it can run headless
+     *****************************************************/
+    public void renderFrame() {
         //calculate frame rate
         _frameCount++;
         if (System.currentTimeMillis() > startTime + 1000) {
             startTime = System.currentTimeMillis();
             _frameRate = _frameCount;
             _frameCount = 0;
-
-            //once every second all dead sprites are deleted
-            purgeSprites();
         }
+        //put the backdrop back where the last frame drew
+        long time = System.nanoTime();
+        restoreBackdrop();
+
         //this method implemented by sub-class
         gameRefreshScreen();
+        long now = System.nanoTime();
+        timings[PHASE_REFRESH].record(now - time);
 
         //draw the internal list of sprites
         if (!gamePaused()) {
+            time = now;
             drawSprites();
+            now = System.nanoTime();
+            timings[PHASE_DRAW].record(now - time);
+        }
+
+        if (timingOverlay) {
+            drawTimingOverlay();
+        }
+
+        //show everything drawn over this frame or the last one
+        if (dirtyFrame) {
+            presented.clear();
+            presented.add(drawnLast);
+            presented.add(drawnNow);
+            DirtyRegion last = drawnLast;
+            drawnLast = drawnNow;
+            drawnNow = last;
+            drawnNow.clear();
+        }
+    }
+
+    /*****************************************************
+     * start a frame in dirty rectangle mode by copying the
+     * backdrop over whatever the last frame drew, or over
+     * the whole screen when the mode or backdrop has just
+     * changed
+     *****************************************************/
+    private void restoreBackdrop() {
+        BufferedImage bg = backdrop;
+        boolean dirty = dirtyRendering && bg != null;
+        if (!dirty) {
+            dirtyFrame = false;
+            return;
         }
 
-        paint(g);
+        if (!dirtyFrame || bg != restoredFrom) {
+            g2d.drawImage(bg, 0, 0, this);
+            drawnLast.addAll();
+        }
+        else {
+            int rects = drawnLast.rectangles();
+            for (int n = 0; n < rects; n++) {
+                int x = drawnLast.rectX(n);
+                int y = drawnLast.rectY(n);
+                int x2 = x + drawnLast.rectWidth(n);
+                int y2 = y + drawnLast.rectHeight(n);
+                g2d.drawImage(bg, x, y, x2, y2, x, y, x2, y2, this);
+            }
+        }
+        restoredFrom = bg;
+        dirtyFrame = true;
+    }
+
+    /*****************************************************
+     * print the p50/p99/max of each phase in the corner of
+     * the back buffer, and what became of the sound commands,
+     * reusing the same text buffers
+     *****************************************************/
+    private void drawTimingOverlay() {
+        g2d.setFont(overlayFont);
+        g2d.setColor(Color.GREEN);
+        int y = screenHeight - 10 - (PHASES + 1) * 14;
+        markDirty(0, y - 14, 360, (PHASES + 1) * 14 + 4);
+        for (int n = 0; n < PHASES; n++) {
+            TimingHistogram h = timings[n];
+            overlayText.setLength(0);
+            overlayText.append(PHASE_NAMES[n]);
+            while (overlayText.length() < 14) overlayText.append(' ');
+            appendMicros(h.p50());
+            overlayText.append(" / ");
+            appendMicros(h.p99());
+            overlayText.append(" / ");
+            appendMicros(h.max());
+            overlayText.append(" us");
+            drawOverlayLine(y);
+            y += 14;
+        }
+
+        overlayText.setLength(0);
+        overlayText.append("sound dropped ");
+        overlayText.append(audio.dropped());
+        overlayText.append(" / late ");
+        overlayText.append(audio.late());
+        overlayText.append(" / joined ");
+        overlayText.append(audio.coalesced());
+        overlayText.append(" / culled ");
+        overlayText.append(audio.culled());
+        drawOverlayLine(y);
+    }
+
+    private void drawOverlayLine(int y) {
+        int len = overlayText.length();
+        if (len > overlayChars.length) overlayChars = new char[len];
+        overlayText.getChars(0, len, overlayChars, 0);
+        g2d.drawChars(overlayChars, 0, len, 10, y);
+    }
+
+    //nanoseconds as whole microseconds
+    private void appendMicros(long nanos) {
+        overlayText.append(nanos / 1000);
     }
 
     /*****************************************************
-      * applet window paint event method
+      * window paint event method
       *****************************************************/
      public void paint(Graphics g) {
+         long time = System.nanoTime();
          g.drawImage(backbuffer, 0, 0, this);
+         timings[PHASE_PAINT].record(System.nanoTime() - time);
+     }
+
+     /*****************************************************
+      * show only the parts of the back buffer that changed
+      * in the frame just drawn
+      *****************************************************/
+     private void paintDirty(Graphics g) {
+         long time = System.nanoTime();
+         int rects = presented.rectangles();
+         for (int n = 0; n < rects; n++) {
+             int x = presented.rectX(n);
+             int y = presented.rectY(n);
+             int x2 = x + presented.rectWidth(n);
+             int y2 = y + presented.rectHeight(n);
+             g.drawImage(backbuffer, x, y, x2, y2, x, y, x2, y2, this);
+         }
+         timings[PHASE_PAINT].record(System.nanoTime() - time);
      }
 
      /*****************************************************
       * thread start event - start the game loop running
       *****************************************************/
      public void start() {
+         //sound is mixed on its own thread; without a device it stays quiet
+         audio.start();
          gameloop = new Thread(this);
          gameloop.start();
      }
@@ -145,50 +498,240 @@ abstract class Game extends Applet implements Runnable, KeyListener,
          //acquire the current thread
          Thread t = Thread.currentThread();
 
+         //the world always advances in steps of the same length
+         long step = 1000000000L / desiredRate;
+         long renderStep = 1000000000L / Math.max(1, maxRenderRate);
+         long previous = System.nanoTime();
+         long nextRender = previous;
+         long accumulator = 0;
+
          //process the main game loop thread
          while (t == gameloop) {
+             long now = System.nanoTime();
+             accumulator += now - previous;
+             previous = now;
+
+             //run as many ticks as the elapsed time calls for, but
+             //drop the backlog rather than fall further behind
+             int steps = 0;
+             while (accumulator >= step && steps < maxCatchUp) {
+                 tick();
+                 accumulator -= step;
+                 steps++;
+             }
+             if (accumulator >= step) {
+                 accumulator %= step;
+             }
+
+             //refresh the screen between the last two ticks
+             now = System.nanoTime();
+             if (now >= nextRender) {
+                 renderAlpha = (double) accumulator / step;
+                 repaint();
+                 nextRender = Math.max(nextRender + renderStep, now);
+             }
+
+             //sleep until the next tick or frame is due
+             long nextTick = now + (step - accumulator);
+             long wait = Math.min(nextTick, nextRender) - System.nanoTime();
              try {
-                 //set a consistent frame rate
-                 Thread.sleep(1000 / desiredRate);
+                 if (wait > 0) {
+                     Thread.sleep(wait / 1000000, (int)(wait % 1000000));
+                 }
              }
              catch(InterruptedException e) {
                  e.printStackTrace();
              }
+         }
+     }
 
-             //update the internal list of sprites
-             if (!gamePaused()) {
-                 updateSprites();
-                 testCollisions();
-             }
+     /*****************************************************
+      * advance the game world by one step; the game loop
+      * calls this once per frame and a headless runner can
+      * call it as fast as it likes
+      *****************************************************/
+     public void tick() {
+         //pass on key events before anything else moves
+         handleKeys();
+
+         //update the internal list of sprites
+         long time = System.nanoTime();
+         long now;
+         if (!gamePaused()) {
+             updateSprites();
+             now = System.nanoTime();
+             timings[PHASE_UPDATE].record(now - time);
+             time = now;
+
+             testCollisions();
+             now = System.nanoTime();
+             timings[PHASE_COLLISION].record(now - time);
+             time = now;
+         }
+
+         //allow main game to update if needed
+         gameTimedUpdate();
+         timings[PHASE_TIMED_UPDATE].record(System.nanoTime() - time);
 
-             //allow main game to update if needed
-             gameTimedUpdate();
+         //calculate update rate
+         _updateCount++;
+         if (System.currentTimeMillis() > updateStartTime + 1000) {
+             updateStartTime = System.currentTimeMillis();
+             _updateRate = _updateCount;
+             _updateCount = 0;
+         }
 
-             //refresh the screen
-             repaint();
+         //once every second of game time all dead sprites are deleted
+         _ticks++;
+         if (_ticks % desiredRate == 0) {
+             purgeSprites();
          }
+
+         //hand the new state of the world over to the render thread
+         publishSnapshot();
      }
 
      /*****************************************************
       * thread stop event
       *****************************************************/
      public void stop() {
-         //kill the game loop
+         //kill the game loop and let the last tick finish
+         Thread t = gameloop;
          gameloop = null;
+         if (t != null && t != Thread.currentThread()) {
+             try {
+                 t.join(1000);
+             }
+             catch (InterruptedException e) { }
+         }
+
+         audio.stop();
 
          //this method implemented by sub-class
          gameShutdown();
      }
 
      /*****************************************************
-      * key listener events
+      * key listener events; keys are queued here and passed
+      * to the game at the start of the next tick, on the game
+      * loop thread, so they can be recorded and replayed
       *****************************************************/
      public void keyTyped(KeyEvent k) { }
      public void keyPressed(KeyEvent k) {
-         gameKeyDown(k.getKeyCode());
+         queueKey(k.getKeyCode(), true);
      }
      public void keyReleased(KeyEvent k) {
-         gameKeyUp(k.getKeyCode());
+         queueKey(k.getKeyCode(), false);
+     }
+
+     //add a key event for the next tick to handle
+     public void queueKey(int keyCode, boolean pressed) {
+         synchronized (keyQueue) {
+             if (keyQueueCount == keyQueue.length) {
+                 keyQueue = Arrays.copyOf(keyQueue, keyQueueCount * 2);
+             }
+             keyQueue[keyQueueCount++] = (keyCode << 1) | (pressed ? 1 : 0);
+         }
+     }
+
+     /*****************************************************
+      * hand the queued key events to the game, recording
+      * them if a session is being recorded. during playback
+      * the events come from the replay instead and keys from
+      * the keyboard are dropped.
+      *****************************************************/
+     private void handleKeys() {
+         int count;
+         synchronized (keyQueue) {
+             count = keyQueueCount;
+             if (count > keyBatch.length) {
+                 keyBatch = new int[keyQueue.length];
+             }
+             System.arraycopy(keyQueue, 0, keyBatch, 0, count);
+             keyQueueCount = 0;
+         }
+
+         if (playback != null) {
+             int n;
+             while ((n = playback.next(_ticks)) != -1) {
+                 dispatchKey(playback.keyCode(n), playback.pressed(n));
+             }
+             return;
+         }
+
+         for (int n = 0; n < count; n++) {
+             int keyCode = keyBatch[n] >>> 1;
+             boolean pressed = (keyBatch[n] & 1) != 0;
+             if (recording != null) {
+                 recording.record(_ticks, keyCode, pressed);
+             }
+             dispatchKey(keyCode, pressed);
+         }
+     }
+
+     private void dispatchKey(int keyCode, boolean pressed) {
+         if (pressed)
+             gameKeyDown(keyCode);
+         else
+             gameKeyUp(keyCode);
+     }
+
+     /*****************************************************
+      * start recording a session; this must happen before
+      * the first tick so the replay starts from the same
+      * freshly started game. the game is given a new seed
+      * that goes into the recording.
+      *****************************************************/
+     public Replay startRecording() {
+         if (_ticks != 0)
+             throw new IllegalStateException("recording must start before the first tick");
+         setSeed(System.nanoTime());
+         recording = new Replay(seed);
+         return recording;
+     }
+
+     //stop recording and return the finished session
+     public Replay stopRecording() {
+         Replay replay = recording;
+         recording = null;
+         if (replay != null) {
+             replay.finish(_ticks, stateChecksum());
+         }
+         return replay;
+     }
+
+     /*****************************************************
+      * play a recorded session back from the first tick;
+      * the game then ignores the keyboard
+      *****************************************************/
+     public void startPlayback(Replay replay) {
+         if (_ticks != 0)
+             throw new IllegalStateException("playback must start before the first tick");
+         setSeed(replay.seed());
+         replay.rewind();
+         playback = replay;
+     }
+
+     public Replay playback() { return playback; }
+
+     /*****************************************************
+      * checksum of the state of the game world, used to
+      * tell whether a replay ended the way it was recorded.
+      * sub-classes can mix in their own state.
+      *****************************************************/
+     public long stateChecksum() {
+         long sum = _ticks;
+         for (int n=0; n < _sprites.size(); n++) {
+             AnimatedSprite spr = _sprites.get(n);
+             if (!spr.alive()) continue;
+             sum = sum * 31 + spr.spriteType();
+             sum = sum * 31 + spr.state();
+             sum = sum * 31 + Double.doubleToLongBits(spr.position().X());
+             sum = sum * 31 + Double.doubleToLongBits(spr.position().Y());
+             sum = sum * 31 + Double.doubleToLongBits(spr.faceAngle());
+             sum = sum * 31 + spr.currentFrame();
+         }
+         return sum;
      }
 
      /*****************************************************
@@ -257,25 +800,35 @@ abstract class Game extends Applet implements Runnable, KeyListener,
 
      /*****************************************************
       * X and Y velocity calculation functions
+      * angles are in degrees and looked up in the trig table
       *****************************************************/
      protected double calcAngleMoveX(double angle) {
-         return (double)(Math.cos(angle * Math.PI / 180));
+         return Trig.cos(angle);
      }
      protected double calcAngleMoveY(double angle) {
-         return (double) (Math.sin(angle * Math.PI / 180));
+         return Trig.sin(angle);
      }
 
      /*****************************************************
       * update the sprite list from the game loop thread
       *****************************************************/
      protected void updateSprites() {
+         SpriteStore store = _sprites.store();
+         if (store != null) {
+             updateStoredSprites(store);
+             return;
+         }
+
          for (int n=0; n < _sprites.size(); n++) {
-             AnimatedSprite spr = (AnimatedSprite) _sprites.get(n);
+             AnimatedSprite spr = _sprites.get(n);
              if (spr.alive()) {
+                 spr.storeLast();
                  spr.updatePosition();
+                 spr.wrap(screenWidth, screenHeight);
                  spr.updateRotation();
                  spr.updateAnimation();
                  spriteUpdate(spr);
+                 spr.updateBounds();
                  spr.updateLifetime();
                  if (!spr.alive()) {
                      spriteDying(spr);
@@ -284,70 +837,162 @@ abstract class Game extends Applet implements Runnable, KeyListener,
          }
      }
 
+     /*****************************************************
+      * update a stored sprite list: every sprite is moved,
+      * wrapped and turned in one pass over the store's
+      * arrays, then the game sees each sprite, then lifetimes
+      * are counted down in a second pass over the arrays. the
+      * sprites' own updatePosition, updateRotation, wrap and
+      * updateLifetime are not called in this mode.
+      *****************************************************/
+     private void updateStoredSprites(SpriteStore store) {
+         int count = _sprites.size();
+         store.integrate(count);
+
+         for (int n=0; n < count; n++) {
+             if (store.alive[n]) {
+                 AnimatedSprite spr = _sprites.get(n);
+                 spr.updateAnimation();
+                 spriteUpdate(spr);
+                 spr.updateBounds();
+                 if (!store.alive[n]) {
+                     spriteDying(spr);
+                 }
+             }
+         }
+
+         if (died.length < count) {
+             died = new int[Math.max(count, died.length * 2)];
+         }
+         int dead = store.age(count, died);
+         for (int n=0; n < dead; n++) {
+             spriteDying(_sprites.get(died[n]));
+         }
+     }
+
      /*****************************************************
       * perform collision testing of all active sprites
       *****************************************************/
      protected void testCollisions() {
-         //iterate through the sprite list, test each sprite against
-         //every other sprite in the list
+         //bin every live sprite into the broadphase grid
+         int count = _sprites.size();
+         grid.clear();
+         for (int n=0; n < count; n++) {
+             AnimatedSprite spr = _sprites.get(n);
+             if (spr.alive()) {
+                 grid.insert(n, spr.boundsX(), spr.boundsY(),
+                             spr.boundsWidth(), spr.boundsHeight());
+             }
+         }
+
+         //test each sprite against the sprites sharing its grid cells;
+         //sprites spawned during the pass are appended to the list
+         //and are not in the grid, so they are checked one by one
          for (int first=0; first < _sprites.size(); first++) {
 
              //get the first sprite to test for collision
-             AnimatedSprite spr1 = (AnimatedSprite) _sprites.get(first);
+             AnimatedSprite spr1 = _sprites.get(first);
              if (spr1.alive()) {
-
-                 //look through all sprites again for collisions
-                 for (int second = 0; second < _sprites.size(); second++) {
-
-                     //make sure this isn't the same sprite
-                     if (first != second) {
-
-                         //get the second sprite to test for collision
-                         AnimatedSprite spr2 = (AnimatedSprite)
-                                               _sprites.get(second);
-                         if (spr2.alive()) {
-                             if (spr2.collidesWith(spr1)) {
-                                 spriteCollision(spr1, spr2);
-                                 break;
-                             }
-                             else
-                                spr1.setCollided(false);
-
-                         }
-                     }
+                 int found = grid.query(spr1.boundsX(), spr1.boundsY(),
+                                        spr1.boundsWidth(), spr1.boundsHeight());
+                 int[] candidates = grid.results();
+                 boolean hit = false;
+
+                 //candidates come back in list order, like the old loop
+                 for (int c = 0; c < found && !hit; c++) {
+                     hit = collide(spr1, first, candidates[c]);
+                 }
+                 for (int second = count; second < _sprites.size() && !hit; second++) {
+                     hit = collide(spr1, first, second);
+                 }
+                 if (!hit) {
+                     spr1.setCollided(false);
                  }
              }
          }
      }
 
+     /*****************************************************
+      * narrowphase test of one candidate pair, passing a hit
+      * on to the sub-class
+      *****************************************************/
+     private boolean collide(AnimatedSprite spr1, int first, int second) {
+         //make sure this isn't the same sprite
+         if (first == second) return false;
+
+         AnimatedSprite spr2 = _sprites.get(second);
+         if (!spr2.alive()) return false;
+         boolean hit = pixelCollisions ? spr2.collidesPixels(spr1)
+                                       : spr2.collidesWith(spr1);
+         if (hit) {
+             spriteCollision(spr1, spr2);
+             return true;
+         }
+         return false;
+     }
+
      /*****************************************************
       * draw all active sprites in the sprite list
       * sprites lower in the list are drawn on top
       *****************************************************/
      protected void drawSprites() {
+         //pick up the newest snapshot if the game loop published one
+         RenderSnapshot ready = latestSnapshot.get();
+         if (ready.tick() > frontSnapshot.tick()) {
+             frontSnapshot = latestSnapshot.getAndSet(frontSnapshot);
+         }
+
          //draw sprites in reverse order (reverse priority)
+         RenderSnapshot frame = frontSnapshot;
+         double alpha = renderAlpha;
+         for (int n=0; n<frame.size(); n++) {
+             Image image = frame.image(n);
+             if (image != null) {
+                 //write straight into the back buffer if the sprite
+                 //asks for it, else blit a cached rotation, or
+                 //transform if it isn't ready
+                 RotationCache cache = rotations;
+                 boolean drawn;
+                 if (frame.blitMode(n) != RasterBlitter.JAVA2D && rasterBlitter() != null)
+                     drawn = frame.blit(n, alpha, blitter, cache);
+                 else
+                     drawn = (cache != null) && frame.draw(n, alpha, g2d, cache);
+                 if (!drawn) {
+                     frame.transform(n, alpha, drawTransform);
+                     g2d.drawImage(image, drawTransform, this);
+                 }
+                 if (dirtyFrame) {
+                     frame.markDrawn(n, drawnNow);
+                 }
+             }
+             spriteDraw(frame, n);
+         }
+     }
+
+     /*****************************************************
+      * record every live sprite into the back snapshot and
+      * swap it with the one waiting for the render thread;
+      * this is the only place the render side gets sprite
+      * state, so the sprite list is never shared
+      *****************************************************/
+     protected void publishSnapshot() {
+         backSnapshot.clear(_ticks);
          for (int n=0; n<_sprites.size(); n++) {
-             AnimatedSprite spr = (AnimatedSprite) _sprites.get(n);
+             AnimatedSprite spr = _sprites.get(n);
              if (spr.alive()) {
                  spr.updateFrame();
-                 spr.transform();
-                 spr.draw();
-                 spriteDraw(spr);
+                 backSnapshot.record(spr);
              }
          }
+         backSnapshot = latestSnapshot.getAndSet(backSnapshot);
      }
 
      /*****************************************************
       * once every second during the frame update, this method
-      * is called to remove all dead sprites from the linked list
+      * is called to remove all dead sprites from the sprite list
       *****************************************************/
      private void purgeSprites() {
-         for (int n=0; n < _sprites.size(); n++) {
-             AnimatedSprite spr = (AnimatedSprite) _sprites.get(n);
-             if (!spr.alive()) {
-                 _sprites.remove(n);
-             }
-         }
+         _sprites.purge();
      }
 
 
@@ -0,0 +1,72 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* GameApplet class
+*****************************************************/
+import java.applet.*;
+import java.awt.*;
+import java.io.*;
+
+/*****************************************************
+ * applet that hosts a game in the browser. the game class
+ * is named by the "game" applet parameter and fills the
+ * whole applet area. if the "record" parameter names a
+ * file, the session is recorded and saved there when the
+ * applet stops, for playback with HeadlessRunner.
+ *****************************************************/
+public class GameApplet extends Applet {
+    private Game game;
+    private String recordFile;
+
+    /*****************************************************
+     * applet init event method
+     *****************************************************/
+    public void init() {
+        String name = getParameter("game");
+        if (name == null) name = "GalacticWar";
+
+        //create the game named by the applet parameter
+        try {
+            game = (Game) Class.forName(name).getDeclaredConstructor().newInstance();
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return;
+        }
+
+        setLayout(new BorderLayout());
+        add(game, BorderLayout.CENTER);
+        game.init();
+
+        //record from the very first tick
+        recordFile = getParameter("record");
+        if (recordFile != null) {
+            game.startRecording();
+        }
+    }
+
+    /*****************************************************
+     * applet start and stop events are passed to the game
+     *****************************************************/
+    public void start() {
+        if (game == null) return;
+        game.start();
+        game.requestFocus();
+    }
+
+    public void stop() {
+        if (game == null) return;
+        game.stop();
+
+        //save the recorded session
+        Replay replay = game.stopRecording();
+        if (replay != null) {
+            try {
+                replay.save(new File(recordFile));
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* HeadlessRunner class
+*****************************************************/
+import java.awt.event.*;
+import java.io.*;
+
+/*****************************************************
+ * drives a game without a screen or a game loop thread,
+ * stepping the world as fast as possible. rendering into
+ * the back buffer is optional. this is used to soak-test
+ * game logic and to time the engine on machines that
+ * have no display. it can also play back a recorded
+ * session tick for tick and check that it ends the same.
+ * the game's sounds are mixed offline, one tick's worth
+ * after each tick, so nothing goes to a sound card but
+ * the commands are still taken and counted as in a game.
+ *
+ * usage: java HeadlessRunner [ticks] [-render] [-asteroids n] [-store] [-dirty]
+ *        java HeadlessRunner -replay file [-render] [-store] [-dirty]
+ *
+ * -store keeps sprite movement state in the game's sprite
+ * store instead of in the sprites themselves. the store is
+ * stepped with the Vector API when the simd folder has been
+ * built and the JVM is started with
+ * --add-modules jdk.incubator.vector (-Dgame.scalar=true
+ * turns that off). -dirty draws in dirty rectangle mode.
+ *****************************************************/
+public class HeadlessRunner {
+    private Game game;
+    private boolean render;
+
+    //one tick of mixed sound, thrown away
+    private byte[] sound;
+    private int soundFrames;
+
+    public HeadlessRunner(Game game, boolean render) {
+        this.game = game;
+        this.render = render;
+        soundFrames = Math.round(game.audio().sampleRate() / game.tickRate());
+        sound = new byte[soundFrames * 4];
+
+        //this calls gameStartup in the game sub-class
+        game.init();
+    }
+
+    public Game game() { return game; }
+    public boolean rendering() { return render; }
+
+    //send a full key press to the game; it is handled on the next tick
+    public void press(int keyCode) {
+        game.queueKey(keyCode, true);
+        game.queueKey(keyCode, false);
+    }
+
+    /*****************************************************
+     * play a recorded session through to its last tick and
+     * return true if the game ended in the recorded state
+     *****************************************************/
+    public boolean replay(Replay replay) {
+        game.startPlayback(replay);
+        run((int)(replay.length() - game.ticks()));
+        return game.stateChecksum() == replay.checksum();
+    }
+
+    /*****************************************************
+     * advance the game by the given number of ticks and
+     * return the time it took in nanoseconds
+     *****************************************************/
+    public long run(int ticks) {
+        long start = System.nanoTime();
+        for (int n = 0; n < ticks; n++) {
+            game.tick();
+            if (render) {
+                game.renderFrame();
+            }
+            game.audio().render(sound, soundFrames);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /*****************************************************
+     * print the p50/p99/max time of every phase that ran
+     *****************************************************/
+    public void printTimings() {
+        for (int n = 0; n < Game.PHASES; n++) {
+            TimingHistogram h = game.phaseTiming(n);
+            if (h.count() == 0) continue;
+            System.out.println(Game.PHASE_NAMES[n] + ": p50 " + h.p50() / 1000
+                + " us, p99 " + h.p99() / 1000 + " us, max " + h.max() / 1000
+                + " us (" + h.count() + " samples)");
+        }
+    }
+
+    public void shutdown() {
+        game.gameShutdown();
+    }
+
+    public static void main(String[] args) {
+        //must be set before any AWT class is touched
+        System.setProperty("java.awt.headless", "true");
+
+        int ticks = 10000;
+        int asteroids = 0;
+        boolean render = false;
+        String replayFile = null;
+        boolean store = false;
+        boolean dirty = false;
+        for (int n = 0; n < args.length; n++) {
+            if (args[n].equals("-render"))
+                render = true;
+            else if (args[n].equals("-asteroids"))
+                asteroids = Integer.parseInt(args[++n]);
+            else if (args[n].equals("-store"))
+                store = true;
+            else if (args[n].equals("-dirty"))
+                dirty = true;
+            else if (args[n].equals("-replay"))
+                replayFile = args[++n];
+            else
+                ticks = Integer.parseInt(args[n]);
+        }
+
+        GalacticWar war = new GalacticWar();
+        HeadlessRunner runner = new HeadlessRunner(war, render);
+        war.useSpriteStore(store);
+        war.setDirtyRendering(dirty);
+        if (store) {
+            System.out.println("sprite store loops: "
+                + SpriteStore.integrator().getClass().getName());
+        }
+
+        long nanos;
+        if (replayFile != null) {
+            Replay replay;
+            try {
+                replay = Replay.load(new File(replayFile));
+            }
+            catch (IOException e) {
+                System.out.println("can't read " + replayFile + ": " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+            ticks = (int) replay.length();
+            long start = System.nanoTime();
+            boolean same = runner.replay(replay);
+            nanos = System.nanoTime() - start;
+            System.out.println("replayed " + replay.size() + " key events, "
+                + (same ? "final state matches" : "FINAL STATE DIFFERS")
+                + " (checksum " + Long.toHexString(war.stateChecksum()) + ")");
+            if (!same) {
+                runner.shutdown();
+                System.exit(1);
+            }
+        }
+        else {
+            //start a new game, then add any extra asteroids
+            runner.press(KeyEvent.VK_ENTER);
+            runner.run(1);
+            for (int n = 0; n < asteroids; n++) {
+                war.createAsteroid();
+            }
+            nanos = runner.run(ticks - 1);
+        }
+        runner.shutdown();
+
+        double ms = nanos / 1000000.0;
+        System.out.println(ticks + " ticks in " + Math.round(ms) + " ms ("
+            + Math.round(ticks / (ms / 1000.0)) + " ticks/sec)");
+        System.out.println("sprites: " + war.sprites().size()
+            + ", score: " + war.score);
+        runner.printTimings();
+    }
+}
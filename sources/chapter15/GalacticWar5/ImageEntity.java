@@ -3,18 +3,19 @@
  **********************************************************/
 import java.awt.*;
 import java.awt.geom.*;
+import java.io.*;
 import java.net.*;
-import java.applet.*;
+import javax.imageio.*;
 
 public class ImageEntity extends BaseGameEntity {
     //variables
     protected Image image;
-    protected Applet applet;
+    protected Component applet;
     protected AffineTransform at;
     protected Graphics2D g2d;
 
     //default constructor
-    ImageEntity(Applet a) {
+    ImageEntity(Component a) {
         applet = a;
         setImage(null);
         setAlive(true);
@@ -26,7 +27,11 @@ public class ImageEntity extends BaseGameEntity {
         this.image = image;
         double x = applet.getSize().width/2  - width()/2;
         double y = applet.getSize().height/2 - height()/2;
-        at = AffineTransform.getTranslateInstance(x, y);
+        //reuse the transform, this is called on every animation frame
+        if (at == null)
+            at = AffineTransform.getTranslateInstance(x, y);
+        else
+            at.setToTranslation(x, y);
     }
 
     public int width() {
@@ -63,20 +68,40 @@ public class ImageEntity extends BaseGameEntity {
         return url;
     }
 
+    //decode the whole file before returning; this is safe to
+    //call from a loader thread
     public void load(String filename) {
-        Toolkit tk = Toolkit.getDefaultToolkit();
-        image = tk.getImage(getURL(filename));
-        while(getImage().getWidth(applet) <= 0);
-        double x = applet.getSize().width/2  - width()/2;
-        double y = applet.getSize().height/2 - height()/2;
-        at = AffineTransform.getTranslateInstance(x, y);
+        load(filename, false);
+    }
+
+    //as above, also building the pixel mask used for collisions
+    public void load(String filename, boolean collides) {
+        Image img = null;
+        try {
+            img = ImageIO.read(getURL(filename));
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println("Image not found: " + filename);
+        }
+        //convert once here so no blit has to convert pixels
+        setImage(ImageFormat.toCompatible(img));
+        if (collides) CollisionMask.register(image, applet);
     }
 
+    //rotate about the center, then move into place, in one step
     public void transform() {
-        at.setToIdentity();
-        at.translate((int)getX() + width()/2, (int)getY() + height()/2);
-        at.rotate(Math.toRadians(getFaceAngle()));
-        at.translate(-width()/2, -height()/2);
+        int w = width();
+        int h = height();
+        double cos = Trig.cos(getFaceAngle());
+        double sin = Trig.sin(getFaceAngle());
+        double cx = (int)getX() + w/2;
+        double cy = (int)getY() + h/2;
+        at.setTransform(cos, sin, -sin, cos,
+            cx - cos * (w/2) + sin * (h/2),
+            cy - sin * (w/2) - cos * (h/2));
     }
 
     public void draw() {
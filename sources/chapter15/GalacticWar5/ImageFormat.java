@@ -0,0 +1,98 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* ImageFormat class
+*****************************************************/
+import java.awt.*;
+import java.awt.image.*;
+
+/*****************************************************
+ * converts loaded images into the format that is fastest
+ * to draw. an image straight from the decoder can be in
+ * any format, and drawing it then means converting every
+ * pixel on every blit. with a screen, images are made
+ * compatible with its graphics configuration; headless,
+ * images with any transparency become premultiplied ARGB
+ * and opaque ones plain RGB like the back buffer. every
+ * image is classed as opaque, bitmask (each pixel fully
+ * on or off) or translucent by looking at its pixels, so
+ * an opaque image is a straight copy.
+ *****************************************************/
+class ImageFormat {
+    /*****************************************************
+     * returns a copy of an image in the drawing format
+     *****************************************************/
+    public static BufferedImage toCompatible(Image image) {
+        if (image == null) return null;
+        int w = image.getWidth(null);
+        int h = image.getHeight(null);
+        if (w <= 0 || h <= 0) return null;
+
+        BufferedImage converted = create(w, h, transparency(image));
+        Graphics2D g = converted.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+    /*****************************************************
+     * an empty image in the drawing format for the given
+     * Transparency value
+     *****************************************************/
+    public static BufferedImage create(int width, int height, int transparency) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            GraphicsConfiguration gc = GraphicsEnvironment
+                .getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice()
+                .getDefaultConfiguration();
+            return gc.createCompatibleImage(width, height, transparency);
+        }
+        if (transparency == Transparency.OPAQUE) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    /*****************************************************
+     * class an image by its pixels: OPAQUE if every pixel is
+     * solid, BITMASK if each is solid or clear, otherwise
+     * TRANSLUCENT
+     *****************************************************/
+    public static int transparency(Image image) {
+        //formats without alpha can't be anything but opaque
+        if (image instanceof BufferedImage
+            && !((BufferedImage)image).getColorModel().hasAlpha()) {
+            return Transparency.OPAQUE;
+        }
+
+        int w = image.getWidth(null);
+        int h = image.getHeight(null);
+        BufferedImage pixels;
+        if (image instanceof BufferedImage) {
+            pixels = (BufferedImage) image;
+        }
+        else {
+            pixels = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = pixels.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+        }
+
+        int result = Transparency.OPAQUE;
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            pixels.getRGB(0, y, w, 1, row, 0, w);
+            for (int x = 0; x < w; x++) {
+                int alpha = row[x] >>> 24;
+                if (alpha == 0) {
+                    result = Transparency.BITMASK;
+                }
+                else if (alpha != 255) {
+                    return Transparency.TRANSLUCENT;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -6,41 +6,87 @@
 
 import java.io.*;
 import javax.sound.midi.*;
+import javax.sound.sampled.*;
 import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
 
+/******************************************************************
+ * a midi song. parsing the file and opening the sequencer can take
+ * a while, so load only starts them on a loader thread and returns;
+ * play and stop are passed to the same thread, in order, so a play
+ * asked for before the song is ready starts it once it is. each
+ * file is parsed only once, however many sequences load it.
+ *
+ * given an AudioMixer, the song is also rendered to samples by the
+ * software synthesizer in the background, and once that is done it
+ * is played through the mixer like a sound effect, with no
+ * sequencer at all. until then the sequencer plays it.
+ ******************************************************************/
 public class MidiSequence {
-    //primary midi sequencer object
+    //songs parsed or being parsed, and songs rendered, by file name
+    private static HashMap<String, Future<Sequence>> songs =
+        new HashMap<String, Future<Sequence>>();
+    private static HashMap<String, Future<AudioSample>> rendered =
+        new HashMap<String, Future<AudioSample>>();
+
+    //thread that parses songs and drives every sequencer, and the
+    //thread that renders songs, which takes much longer
+    private static ExecutorService loader;
+    private static ExecutorService renderer;
+
+    //music is never pushed out of the mixer by sound effects
+    static final int MUSIC_PRIORITY = 100;
+
+    //primary midi sequencer object, only used on the loader thread
     private Sequencer sequencer;
+    private volatile boolean open = false;
 
-    //provide Sequence as a read-only property
-    private Sequence song;
+    //provide Sequence as a read-only property, null until parsed
+    private volatile Sequence song;
     public Sequence getSong() { return song; }
 
+    //mixer to play the rendered song through, and the rendering
+    private AudioMixer mixer;
+    private volatile Future<AudioSample> sample;
+    private int group;
+
     //filename property is read-only
-    private String filename;
+    private volatile String filename;
     public String getFilename() { return filename; }
 
     //looping property
-    private boolean looping = false;
+    private volatile boolean looping = false;
     public boolean getLooping() { return looping; }
     public void setLooping(boolean _looping) { looping = _looping; }
 
     //repeat property
-    private int repeat = 0;
+    private volatile int repeat = 0;
     public void setRepeat(int _repeat) { repeat = _repeat; }
     public int getRepeat() { return repeat; }
 
+    //volume of the rendered song in the mixer
+    private volatile float gain = 1f;
+    public void setGain(float _gain) { gain = _gain; }
+    public float getGain() { return gain; }
+
     //returns whether the sequence is ready for action
     public boolean isLoaded() {
-        return (boolean)(sequencer.isOpen());
+        return (boolean)(open || renderedSample() != null);
+    }
+
+    //returns whether the song will play through the mixer
+    public boolean isRendered() {
+        return renderedSample() != null;
     }
 
     //primary constructor
-    public MidiSequence() {
-        try {
-            //fire up the sequencer
-            sequencer = MidiSystem.getSequencer();
-        } catch (MidiUnavailableException e) { }
+    public MidiSequence() { }
+
+    //constructor for a song rendered and played by the engine mixer
+    public MidiSequence(AudioMixer mixer) {
+        this.mixer = mixer;
+        group = mixer.newGroup();
     }
 
     //overloaded constructor accepts a filename
@@ -61,42 +107,180 @@ public class MidiSequence {
    }
 
 
-    //load a midi file into a sequence
+    /*****************************************************
+     * start loading a midi file; returns false only if the
+     * file can't be found. without a mixer the sequencer is
+     * opened on the song as soon as it is parsed.
+     *****************************************************/
     public boolean load(String midifile) {
-        try {
-
-            //load the midi file into the sequencer
-            filename = midifile;
-            song = MidiSystem.getSequence(getURL(filename));
-            sequencer.setSequence(song);
-            sequencer.open();
-            return true;
+        final URL url = getURL(midifile);
+        if (url == null) return false;
+        filename = midifile;
+        final Future<Sequence> parsed = parse(url, midifile);
 
-        } catch (InvalidMidiDataException e) {
-            return false;
-        } catch (MidiUnavailableException e) {
-            return false;
-        } catch (IOException e) {
-            return false;
+        if (mixer != null) {
+            sample = render(url, midifile, mixer.sampleRate());
+            //note the song once it is parsed, for getSong
+            loader().execute(new Runnable() {
+                public void run() {
+                    song = get(parsed);
+                }
+            });
+        }
+        else {
+            loader().execute(new Runnable() {
+                public void run() {
+                    openSequencer(parsed);
+                }
+            });
         }
+        return true;
     }
 
     //play the midi sequence
     public void play() {
-        if (!sequencer.isOpen()) return;
-
-        if (looping) {
-            sequencer.setLoopCount(Sequencer.LOOP_CONTINUOUSLY);
-            sequencer.start();
-        } else {
-            sequencer.setLoopCount(repeat);
-            sequencer.start();
+        if (filename == null) return;
+
+        AudioSample music = renderedSample();
+        if (music != null) {
+            //a single voice, so playing again starts it over
+            mixer.play(music, gain, 0f, repeat, looping, MUSIC_PRIORITY, 1, group);
+            return;
         }
+
+        final Future<Sequence> parsed = parse(getURL(filename), filename);
+        final boolean loop = looping;
+        final int times = repeat;
+        loader().execute(new Runnable() {
+            public void run() {
+                if (!openSequencer(parsed)) return;
+                if (loop) {
+                    sequencer.setLoopCount(Sequencer.LOOP_CONTINUOUSLY);
+                    sequencer.start();
+                } else {
+                    sequencer.setLoopCount(times);
+                    sequencer.start();
+                }
+            }
+        });
     }
 
     //stop the midi sequence
     public void stop() {
-        sequencer.stop();
+        AudioSample music = renderedSample();
+        if (music != null) mixer.stopGroup(group);
+
+        loader().execute(new Runnable() {
+            public void run() {
+                if (open) sequencer.stop();
+            }
+        });
+    }
+
+    /*****************************************************
+     * on the loader thread: open the sequencer, if it isn't
+     * already, on the parsed song
+     *****************************************************/
+    private boolean openSequencer(Future<Sequence> parsed) {
+        Sequence parsedSong = get(parsed);
+        if (parsedSong == null) return false;
+        song = parsedSong;
+        try {
+            //fire up the sequencer
+            if (sequencer == null) sequencer = MidiSystem.getSequencer();
+            if (sequencer.getSequence() != parsedSong) sequencer.setSequence(parsedSong);
+            if (!sequencer.isOpen()) sequencer.open();
+            open = true;
+        } catch (MidiUnavailableException e) {
+            open = false;
+        } catch (InvalidMidiDataException e) {
+            open = false;
+        }
+        return open;
+    }
+
+    //the rendered song if it is ready, or null
+    private AudioSample renderedSample() {
+        Future<AudioSample> future = sample;
+        if (future == null || !future.isDone()) return null;
+        return get(future);
+    }
+
+    //result of a finished load, or null if it failed
+    private static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /*****************************************************
+     * the parsed song for a file, parsed once on the loader
+     * thread the first time it is asked for
+     *****************************************************/
+    private static synchronized Future<Sequence> parse(final URL url, String name) {
+        Future<Sequence> future = songs.get(name);
+        if (future == null) {
+            future = loader().submit(new Callable<Sequence>() {
+                public Sequence call() throws Exception {
+                    return MidiSystem.getSequence(url);
+                }
+            });
+            songs.put(name, future);
+        }
+        return future;
+    }
+
+    /*****************************************************
+     * the song for a file played by the software synthesizer
+     * into samples at the given rate, rendered once. the
+     * synthesizer reads midi files as audio streams, so the
+     * whole song is decoded like any other sound file.
+     *****************************************************/
+    private static synchronized Future<AudioSample> render(final URL url,
+        final String name, final float sampleRate)
+    {
+        String key = name + "@" + sampleRate;
+        Future<AudioSample> future = rendered.get(key);
+        if (future == null) {
+            future = renderer().submit(new Callable<AudioSample>() {
+                public AudioSample call() throws Exception {
+                    return AudioSample.decode(name,
+                        AudioSystem.getAudioInputStream(url), sampleRate);
+                }
+            });
+            rendered.put(key, future);
+        }
+        return future;
+    }
+
+    //daemon threads so music never keeps the program running
+    private static synchronized ExecutorService loader() {
+        if (loader == null) loader = daemon("midi loader", Thread.NORM_PRIORITY);
+        return loader;
+    }
+
+    private static synchronized ExecutorService renderer() {
+        //rendering runs for seconds, so it gives way to the game
+        if (renderer == null) renderer = daemon("midi renderer", Thread.MIN_PRIORITY);
+        return renderer;
+    }
+
+    private static ExecutorService daemon(final String name, final int priority) {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                t.setPriority(priority);
+                return t;
+            }
+        });
     }
 
 }
@@ -6,6 +6,9 @@
 class Point2D extends Object {
     private double x, y;
 
+    //for sub-classes that keep the values somewhere else
+    protected Point2D() { }
+
     //int constructor
     Point2D(int x, int y) {
         setX(x);
@@ -0,0 +1,128 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* RasterBenchmark class
+*****************************************************/
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import javax.imageio.*;
+
+/*****************************************************
+ * draws the same frame of unrotated sprites with
+ * Graphics2D.drawImage and with the RasterBlitter in both
+ * modes, checks that BLEND gives the same pixels as Java2D
+ * and prints the time per frame for each. sprites are
+ * spread a little past the screen edges so clipping is
+ * part of the work.
+ *
+ * usage: java RasterBenchmark [sprites...]
+ *****************************************************/
+public class RasterBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int[] counts = { 1000, 10000, 50000 };
+        if (args.length > 0) {
+            counts = new int[args.length];
+            for (int n = 0; n < args.length; n++) {
+                counts[n] = Integer.parseInt(args[n]);
+            }
+        }
+
+        //the game's asteroid images in their drawing format
+        String[] files = { "asteroid1.png", "medium1.png", "small1.png",
+            "tiny1.png", "powerup_gun.png", "plasmashot.png" };
+        BufferedImage[] images = new BufferedImage[files.length];
+        for (int n = 0; n < files.length; n++) {
+            images[n] = ImageFormat.toCompatible(ImageIO.read(new File(files[n])));
+        }
+
+        BufferedImage screen = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        BufferedImage check = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = screen.createGraphics();
+        RasterBlitter blitter = new RasterBlitter(screen);
+
+        for (int c = 0; c < counts.length; c++) {
+            int count = counts[c];
+            Random rand = new Random(1);
+            Image[] image = new Image[count];
+            int[] x = new int[count];
+            int[] y = new int[count];
+            for (int n = 0; n < count; n++) {
+                image[n] = images[rand.nextInt(images.length)];
+                x[n] = rand.nextInt(900) - 100;
+                y[n] = rand.nextInt(700) - 100;
+            }
+
+            //both ways must give the same frame
+            clear(screen);
+            drawJava2D(g, image, x, y);
+            check.getRaster().setRect(screen.getRaster());
+            clear(screen);
+            drawRaster(blitter, image, x, y, RasterBlitter.BLEND);
+            int diff = 0;
+            for (int j = 0; j < 600; j++) {
+                for (int i = 0; i < 800; i++) {
+                    if (screen.getRGB(i, j) != check.getRGB(i, j)) diff++;
+                }
+            }
+
+            //best of five rounds after a warm-up round
+            long java2d = Long.MAX_VALUE, blend = Long.MAX_VALUE, tested = Long.MAX_VALUE;
+            int frames = Math.max(2, 200000 / count);
+            for (int round = 0; round < 6; round++) {
+                long start = System.nanoTime();
+                for (int f = 0; f < frames; f++) drawJava2D(g, image, x, y);
+                long a = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int f = 0; f < frames; f++)
+                    drawRaster(blitter, image, x, y, RasterBlitter.BLEND);
+                long b = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int f = 0; f < frames; f++)
+                    drawRaster(blitter, image, x, y, RasterBlitter.ALPHA_TEST);
+                long t = System.nanoTime() - start;
+                if (round == 0) continue;
+                java2d = Math.min(java2d, a / frames);
+                blend = Math.min(blend, b / frames);
+                tested = Math.min(tested, t / frames);
+            }
+            System.out.println(count + " sprites: Java2D " + ms(java2d)
+                + " ms, blend " + ms(blend) + " ms (" + ratio(java2d, blend)
+                + "x), alpha test " + ms(tested) + " ms (" + ratio(java2d, tested)
+                + "x), pixels differing from Java2D " + diff);
+        }
+    }
+
+    private static void drawJava2D(Graphics2D g, Image[] image, int[] x, int[] y) {
+        for (int n = 0; n < image.length; n++) {
+            g.drawImage(image[n], x[n], y[n], null);
+        }
+    }
+
+    private static void drawRaster(RasterBlitter blitter, Image[] image,
+        int[] x, int[] y, int mode)
+    {
+        for (int n = 0; n < image.length; n++) {
+            blitter.draw(image[n], x[n], y[n], mode);
+        }
+    }
+
+    //fill with a color so blending has something to mix with
+    private static void clear(BufferedImage screen) {
+        Graphics2D g = screen.createGraphics();
+        g.setColor(new Color(20, 40, 90));
+        g.fillRect(0, 0, screen.getWidth(), screen.getHeight());
+        g.dispose();
+    }
+
+    private static double ms(long nanos) {
+        return Math.round(nanos / 10000.0) / 100.0;
+    }
+
+    private static double ratio(long a, long b) {
+        return Math.round(a * 100.0 / b) / 100.0;
+    }
+}
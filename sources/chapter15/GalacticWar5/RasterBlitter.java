@@ -0,0 +1,273 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* RasterBlitter class
+*****************************************************/
+import java.awt.*;
+import java.awt.image.*;
+import java.util.*;
+
+/*****************************************************
+ * draws unrotated images by writing straight into the int
+ * pixels of an RGB back buffer, without going through a
+ * Graphics2D. each image is turned once into runs of
+ * pixels along each row: clear pixels are skipped, solid
+ * runs are copied whole and see-through runs are blended.
+ * BLEND draws premultiplied source over like Java2D does,
+ * to the same pixel; ALPHA_TEST draws every pixel that is
+ * at least half solid as solid and skips the rest.
+ *
+ * the runs of images drawn by image are kept here; runs
+ * made with makeRuns belong to the caller, which is how the
+ * RotationCache keeps the runs of each rotation with the
+ * rotation itself, inside its memory budget. blended runs
+ * made that way read the pixels of a premultiplied image
+ * in place instead of copying them.
+ *
+ * getting at the pixels of an image stops Java2D from
+ * keeping an accelerated copy of it, so a game should only
+ * make a blitter for a back buffer it redraws every frame.
+ *****************************************************/
+class RasterBlitter {
+    //ways a sprite can be drawn
+    static final int JAVA2D = 0;
+    static final int BLEND = 1;
+    static final int ALPHA_TEST = 2;
+
+    private int[] pixels;
+    private int width, height;
+    private int scan, offset;
+
+    //part of the target that may be drawn on
+    private int clipX0, clipY0, clipX1, clipY1;
+
+    //runs of each image for each way of drawing; the keys are
+    //held weakly so images that are thrown away can go
+    private WeakHashMap<Image, Runs> blended = new WeakHashMap<Image, Runs>();
+    private WeakHashMap<Image, Runs> tested = new WeakHashMap<Image, Runs>();
+
+    /*****************************************************
+     * blitter for a TYPE_INT_RGB image; see supports
+     *****************************************************/
+    public RasterBlitter(BufferedImage target) {
+        if (!supports(target))
+            throw new IllegalArgumentException("can only draw into TYPE_INT_RGB images");
+        SinglePixelPackedSampleModel model =
+            (SinglePixelPackedSampleModel) target.getSampleModel();
+        DataBufferInt buffer = (DataBufferInt) target.getRaster().getDataBuffer();
+        pixels = buffer.getData();
+        width = target.getWidth();
+        height = target.getHeight();
+        scan = model.getScanlineStride();
+        offset = buffer.getOffset();
+        resetClip();
+    }
+
+    public static boolean supports(BufferedImage target) {
+        return target != null && target.getType() == BufferedImage.TYPE_INT_RGB;
+    }
+
+    //only draw inside a rectangle of the target
+    public void setClip(int x, int y, int w, int h) {
+        clipX0 = Math.max(0, x);
+        clipY0 = Math.max(0, y);
+        clipX1 = Math.min(width, x + w);
+        clipY1 = Math.min(height, y + h);
+    }
+
+    public void resetClip() {
+        setClip(0, 0, width, height);
+    }
+
+    /*****************************************************
+     * draw an image with its top left corner at x,y using
+     * BLEND or ALPHA_TEST. returns false if the image isn't
+     * a BufferedImage and nothing was drawn.
+     *****************************************************/
+    public boolean draw(Image image, int x, int y, int mode) {
+        Runs runs = runs(image, mode);
+        if (runs == null) return false;
+        draw(runs, x, y);
+        return true;
+    }
+
+    //runs for an image that the caller keeps, to pass to draw
+    public static Runs makeRuns(BufferedImage image, int mode) {
+        return new Runs(image, mode == ALPHA_TEST, true);
+    }
+
+    /*****************************************************
+     * draw runs made by makeRuns with the top left corner of
+     * their image at x,y
+     *****************************************************/
+    public void draw(Runs runs, int x, int y) {
+        //rows and columns of the image inside the clip
+        int top = Math.max(clipY0 - y, 0);
+        int bottom = Math.min(clipY1 - y, runs.height);
+        int left = clipX0 - x;
+        int right = clipX1 - x;
+        if (top >= bottom || left >= runs.width || right <= 0) return;
+
+        int[] src = runs.argb;
+        int[] dst = pixels;
+        for (int r = top; r < bottom; r++) {
+            int srcRow = r * runs.width;
+            int dstRow = offset + (y + r) * scan + x;
+            for (int k = runs.rowStart[r]; k < runs.rowStart[r + 1]; k++) {
+                int start = runs.runX[k];
+                int length = runs.runLength[k];
+                boolean solid = length > 0;
+                int end = start + Math.abs(length);
+
+                //clip the run to the sides
+                if (start < left) start = left;
+                if (end > right) end = right;
+                if (start >= end) continue;
+
+                if (solid) {
+                    System.arraycopy(src, srcRow + start, dst, dstRow + start, end - start);
+                }
+                else {
+                    for (int c = start; c < end; c++) {
+                        dst[dstRow + c] = blend(src[srcRow + c], dst[dstRow + c]);
+                    }
+                }
+            }
+        }
+    }
+
+    //drop the runs made for an image whose pixels have changed
+    public void forget(Image image) {
+        blended.remove(image);
+        tested.remove(image);
+    }
+
+    /*****************************************************
+     * premultiplied source over an opaque pixel, with the
+     * same rounding as Java2D's mul8 table
+     *****************************************************/
+    private static int blend(int src, int dst) {
+        int inverse = 255 - (src >>> 24);
+        int r = ((src >> 16) & 0xFF) + mul8(inverse, (dst >> 16) & 0xFF);
+        int g = ((src >> 8) & 0xFF) + mul8(inverse, (dst >> 8) & 0xFF);
+        int b = (src & 0xFF) + mul8(inverse, dst & 0xFF);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private static int mul8(int a, int b) {
+        return (a * b * 0x10101 + 0x800000) >>> 24;
+    }
+
+    //runs for an image, made the first time it is drawn each way
+    private Runs runs(Image image, int mode) {
+        WeakHashMap<Image, Runs> made = (mode == ALPHA_TEST) ? tested : blended;
+        Runs runs = made.get(image);
+        if (runs == null) {
+            if (!(image instanceof BufferedImage)) return null;
+            runs = new Runs((BufferedImage) image, mode == ALPHA_TEST, false);
+            made.put(image, runs);
+        }
+        return runs;
+    }
+
+    /*****************************************************
+     * the premultiplied pixels of an image and the runs of
+     * them to draw along each row. a run's length is negative
+     * when it has to be blended.
+     *****************************************************/
+    static class Runs {
+        int width, height;
+        int[] argb;
+        int[] rowStart;
+        int[] runX, runLength;
+
+        //true when argb is the image's own pixel array
+        boolean shared;
+
+        Runs(BufferedImage image, boolean alphaTest, boolean share) {
+            width = image.getWidth();
+            height = image.getHeight();
+            if (share && !alphaTest) argb = pixelsOf(image);
+            shared = argb != null;
+            if (!shared) argb = premultiplied(image);
+            rowStart = new int[height + 1];
+            runX = new int[16];
+            runLength = new int[16];
+
+            int count = 0;
+            for (int y = 0; y < height; y++) {
+                rowStart[y] = count;
+                int row = y * width;
+                int x = 0;
+                while (x < width) {
+                    int kind = kind(argb[row + x], alphaTest);
+                    int start = x;
+                    while (x < width && kind(argb[row + x], alphaTest) == kind) x++;
+                    if (kind == CLEAR) continue;
+                    if (count == runX.length) {
+                        runX = Arrays.copyOf(runX, count * 2);
+                        runLength = Arrays.copyOf(runLength, count * 2);
+                    }
+                    runX[count] = start;
+                    runLength[count] = (kind == SOLID) ? x - start : start - x;
+                    count++;
+                }
+            }
+            rowStart[height] = count;
+
+            //alpha tested pixels are drawn solid at full color
+            if (alphaTest) {
+                for (int n = 0; n < argb.length; n++) {
+                    int a = argb[n] >>> 24;
+                    if (a >= 128 && a < 255) {
+                        argb[n] = 0xFF000000 | (image.getRGB(n % width, n / width) & 0xFFFFFF);
+                    }
+                }
+            }
+        }
+
+        static final int CLEAR = 0, SOLID = 1, BLENDED = 2;
+
+        //memory held by the pixels and the runs
+        long bytes() {
+            long pixels = shared ? 0 : argb.length;
+            return 4L * (pixels + rowStart.length + runX.length + runLength.length);
+        }
+
+        static int kind(int pixel, boolean alphaTest) {
+            int a = pixel >>> 24;
+            if (alphaTest) return (a >= 128) ? SOLID : CLEAR;
+            if (a == 0) return CLEAR;
+            return (a == 255) ? SOLID : BLENDED;
+        }
+
+        //the pixel array of a premultiplied image, if it can be read in place
+        static int[] pixelsOf(BufferedImage image) {
+            if (image.getType() != BufferedImage.TYPE_INT_ARGB_PRE) return null;
+            DataBufferInt buffer = (DataBufferInt) image.getRaster().getDataBuffer();
+            SinglePixelPackedSampleModel model =
+                (SinglePixelPackedSampleModel) image.getSampleModel();
+            if (buffer.getOffset() != 0 || model.getScanlineStride() != image.getWidth()
+                || image.getRaster().getParent() != null)
+                return null;
+            return buffer.getData();
+        }
+
+        //read the pixels as premultiplied ARGB, converting if need be
+        static int[] premultiplied(BufferedImage image) {
+            int w = image.getWidth();
+            int h = image.getHeight();
+            BufferedImage pre = image;
+            if (image.getType() != BufferedImage.TYPE_INT_ARGB_PRE) {
+                pre = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+                Graphics2D g = pre.createGraphics();
+                g.setComposite(AlphaComposite.Src);
+                g.drawImage(image, 0, 0, null);
+                g.dispose();
+            }
+            int[] argb = new int[w * h];
+            pre.getRaster().getDataElements(0, 0, w, h, argb);
+            return argb;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* RenderSnapshot class
+*****************************************************/
+import java.awt.*;
+import java.awt.geom.*;
+import java.util.*;
+
+/*****************************************************
+ * everything needed to draw the live sprites as they were
+ * at the end of one tick. the game loop fills a snapshot
+ * and publishes it; from then on it is only read by the
+ * render thread, which never touches the sprites. the
+ * arrays are reused from one snapshot to the next.
+ *****************************************************/
+class RenderSnapshot {
+    //tick this snapshot was taken on, used to find the newest one
+    long tick = -1;
+
+    //number of records in the snapshot
+    int count;
+
+    //position and angle now and before the tick
+    double[] x, y, angle;
+    double[] lastX, lastY, lastAngle;
+    boolean[] smooth;
+
+    //image to draw, its size and how to draw it
+    Image[] image;
+    int[] width, height;
+    int[] blitMode;
+
+    //collision rectangle, flags and type for debug drawing
+    int[] boundsX, boundsY;
+    boolean[] collided;
+    int[] type;
+
+    public RenderSnapshot() {
+        allocate(64);
+    }
+
+    public int size() { return count; }
+    public long tick() { return tick; }
+
+    //empty the snapshot before it is filled again
+    public void clear(long tick) {
+        //let go of images from the last use of this snapshot
+        Arrays.fill(image, 0, count, null);
+        this.tick = tick;
+        count = 0;
+    }
+
+    /*****************************************************
+     * copy the drawing state of a sprite into the next record
+     *****************************************************/
+    public void record(AnimatedSprite spr) {
+        if (count == x.length) {
+            allocate(count * 2);
+        }
+        int n = count++;
+        x[n] = spr.pos.X();
+        y[n] = spr.pos.Y();
+        angle[n] = spr.faceAngle();
+        lastX[n] = spr.lastX();
+        lastY[n] = spr.lastY();
+        lastAngle[n] = spr.lastAngle();
+        smooth[n] = spr.hasLast();
+        image[n] = spr.image();
+        width[n] = spr.imageWidth();
+        height[n] = spr.imageHeight();
+        blitMode[n] = spr.blitMode();
+        boundsX[n] = spr.boundsX();
+        boundsY[n] = spr.boundsY();
+        collided[n] = spr.collided();
+        type[n] = spr.spriteType();
+    }
+
+    public Image image(int n) { return image[n]; }
+    public int blitMode(int n) { return blitMode[n]; }
+    public int spriteType(int n) { return type[n]; }
+    public boolean collided(int n) { return collided[n]; }
+
+    //where the last record interpolated is to be drawn
+    double drawX, drawY, drawAngle;
+
+    /*****************************************************
+     * work out where a record is part way between its state
+     * before the tick (alpha 0) and now (alpha 1), leaving it
+     * in drawX, drawY and drawAngle
+     *****************************************************/
+    public void interpolate(int n, double alpha) {
+        double px = x[n];
+        double py = y[n];
+        double pa = angle[n];
+        if (smooth[n] && alpha < 1.0) {
+            //a jump bigger than the sprite means it warped, so don't smear it
+            double dx = px - lastX[n];
+            double dy = py - lastY[n];
+            if (Math.abs(dx) <= width[n] && Math.abs(dy) <= height[n]) {
+                px = lastX[n] + dx * alpha;
+                py = lastY[n] + dy * alpha;
+            }
+            //turn the short way around when the angle wraps at 360
+            double da = pa - lastAngle[n];
+            if (da > 180) da -= 360;
+            else if (da < -180) da += 360;
+            pa = lastAngle[n] + da * alpha;
+        }
+        drawX = px;
+        drawY = py;
+        drawAngle = pa;
+    }
+
+    /*****************************************************
+     * set up a transform that draws a record part way between
+     * its state before the tick and now, as in interpolate
+     *****************************************************/
+    public void transform(int n, double alpha, AffineTransform at) {
+        interpolate(n, alpha);
+
+        //rotate about the center, then move into place
+        int w = width[n];
+        int h = height[n];
+        double cos = Trig.cos(drawAngle);
+        double sin = Trig.sin(drawAngle);
+        double cx = (int)drawX + w/2;
+        double cy = (int)drawY + h/2;
+        at.setTransform(cos, sin, -sin, cos,
+            cx - cos * (w/2) + sin * (h/2),
+            cy - sin * (w/2) - cos * (h/2));
+    }
+
+    /*****************************************************
+     * draw a record through a rotation cache; returns false
+     * if its rotation isn't ready and it was not drawn
+     *****************************************************/
+    public boolean draw(int n, double alpha, Graphics2D g2d, RotationCache cache) {
+        interpolate(n, alpha);
+        return cache.draw(g2d, image[n], drawX, drawY, width[n], height[n],
+            drawAngle);
+    }
+
+    /*****************************************************
+     * draw a record straight into the back buffer if it is
+     * unrotated or its rotation is cached; returns false if
+     * it has to be drawn through Graphics2D instead
+     *****************************************************/
+    public boolean blit(int n, double alpha, RasterBlitter blitter,
+        RotationCache cache)
+    {
+        interpolate(n, alpha);
+        if (drawAngle == 0) {
+            return blitter.draw(image[n], (int)drawX, (int)drawY, blitMode[n]);
+        }
+        if (cache != null && cache.find(image[n], drawX, drawY, width[n],
+            height[n], drawAngle))
+        {
+            //a rotation's runs are kept by the cache, in its budget
+            RasterBlitter.Runs runs = cache.foundRuns(blitMode[n]);
+            if (runs == null)
+                return blitter.draw(cache.found(), cache.foundX(), cache.foundY(),
+                    blitMode[n]);
+            blitter.draw(runs, cache.foundX(), cache.foundY());
+            return true;
+        }
+        return false;
+    }
+
+    /*****************************************************
+     * mark the area a record was just drawn over, from the
+     * position found by the last interpolate, along with its
+     * collision rectangle. a turned image is marked out to
+     * its corners at any angle, since a cached rotation may
+     * be drawn a little off the real angle.
+     *****************************************************/
+    public void markDrawn(int n, DirtyRegion region) {
+        int w = width[n];
+        int h = height[n];
+        int cx = (int)drawX + w/2;
+        int cy = (int)drawY + h/2;
+        if (drawAngle == 0) {
+            region.add((int)drawX, (int)drawY, w, h);
+        }
+        else {
+            int r = (int) Math.ceil(Math.sqrt(w * w + h * h) / 2) + 2;
+            region.add(cx - r, cy - r, 2 * r, 2 * r);
+        }
+        region.add(boundsX[n], boundsY[n], w + 1, h + 1);
+    }
+
+    //outline the collision rectangle of a record
+    public void drawBounds(int n, Graphics2D g2d, Color c) {
+        g2d.setColor(c);
+        g2d.drawRect(boundsX[n], boundsY[n], width[n], height[n]);
+    }
+
+    private void allocate(int size) {
+        if (x != null && size <= x.length) return;
+        x = grow(x, size);
+        y = grow(y, size);
+        angle = grow(angle, size);
+        lastX = grow(lastX, size);
+        lastY = grow(lastY, size);
+        lastAngle = grow(lastAngle, size);
+        smooth = (smooth == null) ? new boolean[size] : Arrays.copyOf(smooth, size);
+        collided = (collided == null) ? new boolean[size] : Arrays.copyOf(collided, size);
+        image = (image == null) ? new Image[size] : Arrays.copyOf(image, size);
+        width = grow(width, size);
+        height = grow(height, size);
+        blitMode = grow(blitMode, size);
+        boundsX = grow(boundsX, size);
+        boundsY = grow(boundsY, size);
+        type = grow(type, size);
+    }
+
+    private static double[] grow(double[] a, int size) {
+        return (a == null) ? new double[size] : Arrays.copyOf(a, size);
+    }
+
+    private static int[] grow(int[] a, int size) {
+        return (a == null) ? new int[size] : Arrays.copyOf(a, size);
+    }
+}
@@ -0,0 +1,166 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* Replay class
+*****************************************************/
+import java.io.*;
+import java.util.*;
+
+/*****************************************************
+ * a recorded game session: the random seed the game was
+ * started with and every key event stamped with the tick
+ * it was handled on. because the game only reacts to keys
+ * at the start of a tick, feeding the same events to a
+ * fresh game with the same seed plays the session again
+ * exactly. the length of the session and a checksum of
+ * the final game state are kept so a replay can be checked.
+ *
+ * file layout (big-endian): magic, version, seed, length
+ * in ticks, final checksum, event count, then one pair of
+ * variable-length ints per event: the ticks since the last
+ * event, and the key code shifted left with the low bit
+ * set for a key press.
+ *****************************************************/
+class Replay {
+    private static final int MAGIC = 0x47575250;   //"GWRP"
+    private static final int VERSION = 1;
+
+    private long seed;
+    private long length;
+    private long checksum;
+
+    //events in the order they were handled
+    private long[] ticks;
+    private int[] keys;
+    private int count;
+
+    //next event to hand out during playback
+    private int cursor;
+
+    public Replay(long seed) {
+        this.seed = seed;
+        ticks = new long[256];
+        keys = new int[256];
+        count = 0;
+        cursor = 0;
+    }
+
+    public long seed() { return seed; }
+    public long length() { return length; }
+    public long checksum() { return checksum; }
+    public int size() { return count; }
+
+    public long tick(int n) { return ticks[n]; }
+    public int keyCode(int n) { return keys[n] >>> 1; }
+    public boolean pressed(int n) { return (keys[n] & 1) != 0; }
+
+    /*****************************************************
+     * add a key event handled on the given tick
+     *****************************************************/
+    public void record(long tick, int keyCode, boolean pressed) {
+        if (count == ticks.length) {
+            ticks = Arrays.copyOf(ticks, count * 2);
+            keys = Arrays.copyOf(keys, count * 2);
+        }
+        ticks[count] = tick;
+        keys[count] = (keyCode << 1) | (pressed ? 1 : 0);
+        count++;
+    }
+
+    //mark the end of the session and the state it ended in
+    public void finish(long length, long checksum) {
+        this.length = length;
+        this.checksum = checksum;
+    }
+
+    /*****************************************************
+     * playback: returns the index of the next event due on
+     * this tick, or -1 once there are none left for it
+     *****************************************************/
+    public int next(long tick) {
+        if (cursor < count && ticks[cursor] <= tick) {
+            return cursor++;
+        }
+        return -1;
+    }
+
+    //start handing out events from the beginning again
+    public void rewind() { cursor = 0; }
+
+    /*****************************************************
+     * write the replay to a file
+     *****************************************************/
+    public void save(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(seed);
+            out.writeLong(length);
+            out.writeLong(checksum);
+            out.writeInt(count);
+            long last = 0;
+            for (int n = 0; n < count; n++) {
+                writeVarLong(out, ticks[n] - last);
+                writeVarLong(out, keys[n]);
+                last = ticks[n];
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /*****************************************************
+     * read a replay written by save
+     *****************************************************/
+    public static Replay load(File file) throws IOException {
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " is not a replay file");
+            int version = in.readShort();
+            if (version != VERSION)
+                throw new IOException("unsupported replay version " + version);
+
+            Replay replay = new Replay(in.readLong());
+            long length = in.readLong();
+            long checksum = in.readLong();
+            int events = in.readInt();
+            long tick = 0;
+            for (int n = 0; n < events; n++) {
+                tick += readVarLong(in);
+                int key = (int) readVarLong(in);
+                replay.record(tick, key >>> 1, (key & 1) != 0);
+            }
+            replay.finish(length, checksum);
+            return replay;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    //seven bits per byte, high bit set on every byte but the last
+    private static void writeVarLong(DataOutputStream out, long value)
+        throws IOException
+    {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int)(value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("bad number in replay file");
+    }
+}
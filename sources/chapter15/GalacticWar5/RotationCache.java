@@ -0,0 +1,349 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* RotationCache class
+*****************************************************/
+import java.awt.*;
+import java.awt.geom.*;
+import java.awt.image.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/*****************************************************
+ * sprite images drawn ahead of time at a fixed number of
+ * angles, so a rotated sprite can be drawn with a plain
+ * blit instead of through a rotating transform. angles are
+ * rounded to the nearest bucket, so with 64 buckets a
+ * sprite is drawn up to 2.8 degrees away from its real
+ * angle. a missing rotation is drawn on a background
+ * thread and the sprite is drawn the slow way until it is
+ * ready. the rotations kept are limited to a memory budget;
+ * when it is used up the least recently drawn ones go.
+ * the RasterBlitter runs of a rotation are kept with it,
+ * count toward the same budget, and go when it goes.
+ *
+ * the cache belongs to the render thread: only draw and
+ * the methods below it may be called from there, and
+ * finished rotations are only taken in by draw.
+ *****************************************************/
+class RotationCache {
+    //default number of angles and memory budget
+    static final int DEFAULT_BUCKETS = 64;
+    static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+    private static ExecutorService builder;
+
+    private int buckets;
+    private long budget;
+    private long used = 0;
+
+    //rotations of each image, looked up by identity
+    private IdentityHashMap<Image, Rotations> images =
+        new IdentityHashMap<Image, Rotations>();
+
+    //rotations finished by the builder, waiting to be taken in
+    private ConcurrentLinkedQueue<Built> finished =
+        new ConcurrentLinkedQueue<Built>();
+
+    //counts draws, so the oldest rotation is the one drawn longest ago
+    private long clock = 0;
+
+    private int hits = 0, misses = 0, evictions = 0;
+
+    //what the last call to find came up with
+    private Image found;
+    private int foundX, foundY;
+    private Rotations foundRotations;
+    private int foundBucket;
+
+    public RotationCache() {
+        this(DEFAULT_BUCKETS, DEFAULT_BUDGET);
+    }
+
+    public RotationCache(int buckets, long budgetBytes) {
+        if (buckets < 1)
+            throw new IllegalArgumentException("need at least one bucket");
+        this.buckets = buckets;
+        this.budget = budgetBytes;
+    }
+
+    public int buckets() { return buckets; }
+    public long budget() { return budget; }
+    public long bytesUsed() { return used; }
+
+    //draws that were a blit, draws that had to be transformed, and
+    //rotations dropped to stay in budget
+    public int hits() { return hits; }
+    public int misses() { return misses; }
+    public int evictions() { return evictions; }
+
+    /*****************************************************
+     * draw an image rotated about its center by the given
+     * angle in degrees, with its top left corner at x,y as
+     * ImageEntity.transform would place it. returns false if
+     * the rotation isn't ready yet and nothing was drawn.
+     *****************************************************/
+    public boolean draw(Graphics2D g, Image image, double x, double y,
+        int width, int height, double angle)
+    {
+        if (!find(image, x, y, width, height, angle)) return false;
+        g.drawImage(found, foundX, foundY, null);
+        return true;
+    }
+
+    /*****************************************************
+     * look up the rotation draw would use, without drawing
+     * it; if there is one, found, foundX and foundY give the
+     * image to blit and where, otherwise false is returned
+     *****************************************************/
+    public boolean find(Image image, double x, double y,
+        int width, int height, double angle)
+    {
+        takeFinished();
+
+        int b = bucket(angle);
+        if (b == 0) {
+            //no rotation at all, draw the image as it is
+            hits++;
+            found = image;
+            foundRotations = null;
+            foundX = (int)x;
+            foundY = (int)y;
+            return true;
+        }
+
+        Rotations r = images.get(image);
+        if (r == null) {
+            r = new Rotations(buckets);
+            images.put(image, r);
+        }
+        BufferedImage rotated = r.image[b];
+        if (rotated == null) {
+            misses++;
+            foundRotations = null;
+            if (!r.pending[b]) {
+                r.pending[b] = true;
+                requestBuild(image, b, width, height);
+            }
+            return false;
+        }
+
+        hits++;
+        r.used[b] = ++clock;
+        found = rotated;
+        foundRotations = r;
+        foundBucket = b;
+        foundX = (int)x + width/2 - r.centerX[b];
+        foundY = (int)y + height/2 - r.centerY[b];
+        return true;
+    }
+
+    /*****************************************************
+     * RasterBlitter runs for the rotation the last find came
+     * up with, made the first time they are asked for in a
+     * mode; null if find gave back the image itself
+     *****************************************************/
+    public RasterBlitter.Runs foundRuns(int mode) {
+        if (foundRotations == null) return null;
+        Rotations r = foundRotations;
+        int b = foundBucket;
+        RasterBlitter.Runs[] runs = (mode == RasterBlitter.ALPHA_TEST) ? r.tested : r.blended;
+        RasterBlitter.Runs made = runs[b];
+        if (made == null) {
+            made = RasterBlitter.makeRuns(r.image[b], mode);
+            runs[b] = made;
+            used += made.bytes();
+            //the rotation was just drawn, so it is the last to go
+            while (used > budget && evictOldest()) {
+                evictions++;
+            }
+        }
+        return made;
+    }
+
+    public Image found() { return found; }
+    public int foundX() { return foundX; }
+    public int foundY() { return foundY; }
+
+    /*****************************************************
+     * bucket an angle falls in; bucket 0 is no rotation
+     *****************************************************/
+    public int bucket(double angle) {
+        int b = (int) Math.floor(angle * buckets / 360.0 + 0.5);
+        return Math.floorMod(b, buckets);
+    }
+
+    //angle in degrees that a bucket is drawn at
+    public double bucketAngle(int b) {
+        return 360.0 * b / buckets;
+    }
+
+    //drop every rotation, for instance after loading new images
+    public void clear() {
+        images.clear();
+        finished.clear();
+        foundRotations = null;
+        used = 0;
+    }
+
+    /*****************************************************
+     * draw one rotation of an image. the canvas is just big
+     * enough for the turned image, and the image center goes
+     * on a whole pixel so the blit lands exactly where the
+     * transform would have put it.
+     *****************************************************/
+    static Built build(Image image, int bucket, double angle,
+        int width, int height)
+    {
+        double cos = Trig.cos(angle);
+        double sin = Trig.sin(angle);
+        int w = (int) Math.ceil(width * Math.abs(cos) + height * Math.abs(sin)) + 2;
+        int h = (int) Math.ceil(width * Math.abs(sin) + height * Math.abs(cos)) + 2;
+        int cx = w/2;
+        int cy = h/2;
+
+        //the corners are clear, so even an opaque image needs a bitmask
+        int transparency = Transparency.TRANSLUCENT;
+        if (image instanceof BufferedImage) {
+            transparency = Math.max(((BufferedImage)image).getTransparency(),
+                Transparency.BITMASK);
+        }
+        BufferedImage rotated = ImageFormat.create(w, h, transparency);
+        Graphics2D g = rotated.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        AffineTransform at = new AffineTransform(cos, sin, -sin, cos,
+            cx - cos * (width/2) + sin * (height/2),
+            cy - sin * (width/2) - cos * (height/2));
+        g.drawImage(image, at, null);
+        g.dispose();
+
+        return new Built(image, bucket, rotated, cx, cy);
+    }
+
+    //hand a rotation to the background builder
+    private void requestBuild(final Image image, final int bucket,
+        final int width, final int height)
+    {
+        final double angle = bucketAngle(bucket);
+        final int count = buckets;
+        builder().execute(new Runnable() {
+            public void run() {
+                Built built = build(image, bucket, angle, width, height);
+                built.buckets = count;
+                finished.add(built);
+            }
+        });
+    }
+
+    /*****************************************************
+     * put finished rotations in place, then throw out the
+     * least recently drawn ones until back under budget
+     *****************************************************/
+    private void takeFinished() {
+        Built built;
+        boolean added = false;
+        while ((built = finished.poll()) != null) {
+            Rotations r = images.get(built.source);
+            //built for a cache that has since been cleared
+            if (r == null || built.buckets != buckets || r.image[built.bucket] != null)
+                continue;
+            r.image[built.bucket] = built.image;
+            r.centerX[built.bucket] = built.centerX;
+            r.centerY[built.bucket] = built.centerY;
+            r.pending[built.bucket] = false;
+            r.used[built.bucket] = ++clock;
+            used += bytes(built.image);
+            added = true;
+        }
+        if (added) {
+            while (used > budget && evictOldest()) {
+                evictions++;
+            }
+        }
+    }
+
+    //drop the rotation drawn longest ago; false if there's none left
+    private boolean evictOldest() {
+        Rotations oldest = null;
+        int oldestBucket = -1;
+        long oldestUse = Long.MAX_VALUE;
+        for (Rotations r : images.values()) {
+            for (int b = 1; b < buckets; b++) {
+                if (r.image[b] != null && r.used[b] < oldestUse) {
+                    oldest = r;
+                    oldestBucket = b;
+                    oldestUse = r.used[b];
+                }
+            }
+        }
+        if (oldest == null) return false;
+        used -= bytes(oldest.image[oldestBucket]);
+        oldest.image[oldestBucket] = null;
+        //the blitter runs go with the rotation
+        if (oldest.blended[oldestBucket] != null) {
+            used -= oldest.blended[oldestBucket].bytes();
+            oldest.blended[oldestBucket] = null;
+        }
+        if (oldest.tested[oldestBucket] != null) {
+            used -= oldest.tested[oldestBucket].bytes();
+            oldest.tested[oldestBucket] = null;
+        }
+        return true;
+    }
+
+    private static long bytes(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    //one daemon thread, so building never competes with itself
+    private static synchronized ExecutorService builder() {
+        if (builder == null) {
+            builder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "rotation builder");
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                }
+            });
+        }
+        return builder;
+    }
+
+    //every rotation of one image
+    private static class Rotations {
+        BufferedImage[] image;
+        int[] centerX, centerY;
+        long[] used;
+        boolean[] pending;
+        RasterBlitter.Runs[] blended, tested;
+
+        Rotations(int buckets) {
+            image = new BufferedImage[buckets];
+            blended = new RasterBlitter.Runs[buckets];
+            tested = new RasterBlitter.Runs[buckets];
+            centerX = new int[buckets];
+            centerY = new int[buckets];
+            used = new long[buckets];
+            pending = new boolean[buckets];
+        }
+    }
+
+    //a rotation handed back by the builder
+    static class Built {
+        Image source;
+        int bucket, buckets;
+        BufferedImage image;
+        int centerX, centerY;
+
+        Built(Image source, int bucket, BufferedImage image,
+            int centerX, int centerY)
+        {
+            this.source = source;
+            this.bucket = bucket;
+            this.image = image;
+            this.centerX = centerX;
+            this.centerY = centerY;
+        }
+    }
+}
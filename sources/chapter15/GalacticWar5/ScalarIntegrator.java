@@ -0,0 +1,83 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* ScalarIntegrator class
+*****************************************************/
+
+/*****************************************************
+ * plain loops over a sprite store, one slot at a time.
+ * the ranged versions also finish off the slots left over
+ * by the vector loops.
+ *****************************************************/
+class ScalarIntegrator implements SpriteIntegrator {
+
+    public void integrate(SpriteStore s, int count) {
+        integrate(s, 0, count);
+    }
+
+    public int age(SpriteStore s, int count, int[] died) {
+        return age(s, 0, count, died, 0);
+    }
+
+    //integrate the slots from first up to but not including last
+    static void integrate(SpriteStore s, int first, int last) {
+        double[] x = s.x, y = s.y;
+        double[] vx = s.vx, vy = s.vy;
+        double[] faceAngle = s.faceAngle, rotRate = s.rotRate;
+        double[] wrapW = s.wrapW, wrapH = s.wrapH;
+        boolean[] alive = s.alive, wraps = s.wraps;
+        double width = s.screenWidth;
+        double height = s.screenHeight;
+
+        for (int n = first; n < last; n++) {
+            if (!alive[n]) continue;
+            double px = x[n];
+            double py = y[n];
+            double angle = faceAngle[n];
+            s.lastX[n] = px;
+            s.lastY[n] = py;
+            s.lastAngle[n] = angle;
+            s.smooth[n] = true;
+
+            px += vx[n];
+            py += vy[n];
+
+            //wrap around the screen edges
+            if (wraps[n]) {
+                double w = wrapW[n];
+                double h = wrapH[n];
+                if (px < 0-w) px = width;
+                else if (px > width) px = 0-w;
+                if (py < 0-h) py = height;
+                else if (py > height) py = 0-h;
+            }
+            x[n] = px;
+            y[n] = py;
+
+            //keep the face angle between 0 and 360
+            double rate = rotRate[n];
+            angle += rate;
+            if (angle < 0)
+                angle = 360 - rate;
+            else if (angle > 360)
+                angle = rate;
+            faceAngle[n] = angle;
+        }
+    }
+
+    //age a range of slots, adding to the dead slots found so far
+    static int age(SpriteStore s, int first, int last, int[] died, int dead) {
+        int[] lifespan = s.lifespan, lifeage = s.lifeage;
+        boolean[] alive = s.alive;
+        for (int n = first; n < last; n++) {
+            //if lifespan is used, it must be > 0
+            if (!alive[n] || lifespan[n] <= 0) continue;
+            if (++lifeage[n] > lifespan[n]) {
+                alive[n] = false;
+                lifeage[n] = 0;
+                died[dead++] = n;
+            }
+        }
+        return dead;
+    }
+}
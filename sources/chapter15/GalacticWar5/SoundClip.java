@@ -7,22 +7,64 @@
 import javax.sound.sampled.*;
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.*;
 
+/******************************************************************
+ * a sound effect that can play over itself. the file is decoded
+ * once and several clips (voices) are opened on the same samples;
+ * each play takes a voice that is free, or the one that started
+ * longest ago if they are all busy. starting and stopping clips
+ * can wait on the audio device, so it is done on a sound thread
+ * and play and stop return right away.
+ *
+ * given an AudioMixer, the sound opens no lines of its own: it is
+ * decoded by the mixer and every play is mixed into its output.
+ ******************************************************************/
 public class SoundClip {
-    //the source for audio data
-    private AudioInputStream sample;
-
-    //sound clip property is read-only here
-    private Clip clip;
-    public Clip getClip() { return clip; }
+    //the decoded audio data shared by every voice
+    private AudioFormat format;
+    private byte[] samples;
+
+    //clips playing the samples and when each was last started
+    private Clip[] voices;
+    private long[] started;
+    private int voiceCount = 0;
+
+    //sound clip property is read-only here; this is the first voice
+    public Clip getClip() { return (voiceCount > 0) ? voices[0] : null; }
+
+    //number of voices that could be opened
+    public int voices() { return voiceCount; }
+
+    //engine mixer to play through instead of clips, the sample, and
+    //the group that keeps this sound apart from others on the sample
+    private AudioMixer mixer;
+    private AudioSample mixed;
+    private int group;
+
+    //volume (1 is full) and pan (-1 left to 1 right) in the mixer
+    private volatile float gain = 1f;
+    public void setGain(float _gain) { gain = _gain; }
+    public float getGain() { return gain; }
+    private volatile float pan = 0f;
+    public void setPan(float _pan) { pan = _pan; }
+    public float getPan() { return pan; }
+
+    //rank for a mixer voice (higher wins) and most voices at once, 0 for any
+    private volatile int priority = 0;
+    public void setPriority(int _priority) { priority = _priority; }
+    public int getPriority() { return priority; }
+    private volatile int voiceLimit = 0;
+    public void setVoiceLimit(int _voiceLimit) { voiceLimit = _voiceLimit; }
+    public int getVoiceLimit() { return voiceLimit; }
 
     //looping property for continuous playback
-    private boolean looping = false;
+    private volatile boolean looping = false;
     public void setLooping(boolean _looping) { looping = _looping; }
     public boolean getLooping() { return looping; }
 
     //repeat property used to play sound multiple times
-    private int repeat = 0;
+    private volatile int repeat = 0;
     public void setRepeat(int _repeat) { repeat = _repeat; }
     public int getRepeat() { return repeat; }
 
@@ -31,18 +73,31 @@ public class SoundClip {
     public void setFilename(String _filename) { filename = _filename; }
     public String getFilename() { return filename; }
 
+    //thread that starts and stops every clip
+    private static ExecutorService player;
+
     //property to verify when sample is ready
     public boolean isLoaded() {
-        return (boolean)(sample != null);
+        if (mixer != null) return mixed != null;
+        return (boolean)(samples != null && voiceCount > 0);
     }
 
-    //constructor
+    //constructor, with a single voice like a plain clip
     public SoundClip() {
-        try {
-            //create a sound buffer
-            clip = AudioSystem.getClip();
+        this(1);
+    }
+
+    //constructor for a sound that can play this many times at once
+    public SoundClip(int voices) {
+        this.voices = new Clip[Math.max(1, voices)];
+        started = new long[this.voices.length];
+    }
 
-        } catch (LineUnavailableException e) { }
+    //constructor for a sound played through the engine mixer
+    public SoundClip(AudioMixer mixer) {
+        this(1);
+        this.mixer = mixer;
+        group = mixer.newGroup();
     }
 
     //overloaded constructor accepts a filename
@@ -64,41 +119,132 @@ public class SoundClip {
 
     //load sound file
     public boolean load(String audiofile) {
+        if (mixer != null) {
+            setFilename(audiofile);
+            mixed = mixer.load(audiofile);
+            return mixed != null;
+        }
         try {
-
             //prepare the input stream for an audio file
             setFilename(audiofile);
-            //set the audio stream source
-            sample = AudioSystem.getAudioInputStream(getURL(filename));
-            //load the audio file
-            clip.open(sample);
-            return true;
-
+            //decode the whole file once
+            AudioInputStream sample = AudioSystem.getAudioInputStream(getURL(filename));
+            format = sample.getFormat();
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = sample.read(buffer)) > 0) {
+                data.write(buffer, 0, read);
+            }
+            sample.close();
+            samples = data.toByteArray();
         } catch (IOException e) {
             return false;
         } catch (UnsupportedAudioFileException e) {
             return false;
-        } catch (LineUnavailableException e) {
-            return false;
         }
+
+        //open every voice on the same samples
+        closeVoices();
+        for (int n = 0; n < voices.length; n++) {
+            try {
+                Clip clip = AudioSystem.getClip();
+                int length = samples.length - samples.length % format.getFrameSize();
+                clip.open(format, samples, 0, length);
+                voices[voiceCount++] = clip;
+            } catch (LineUnavailableException e) {
+                break;
+            } catch (IllegalArgumentException e) {
+                //no audio device, sounds will be silent
+                break;
+            }
+        }
+        return voiceCount > 0;
     }
 
+    /*****************************************************
+     * play the sound on a free voice; this never waits
+     *****************************************************/
     public void play() {
         //exit if the sample hasn't been loaded
         if (!isLoaded()) return;
 
+        if (mixer != null) {
+            mixer.play(mixed, gain, pan, repeat, looping, priority, voiceLimit, group);
+            return;
+        }
+
+        final boolean loop = looping;
+        final int times = repeat;
+        player().execute(new Runnable() {
+            public void run() {
+                start(loop, times);
+            }
+        });
+    }
+
+    public void stop() {
+        if (!isLoaded()) return;
+        if (mixer != null) {
+            mixer.stopGroup(group);
+            return;
+        }
+        player().execute(new Runnable() {
+            public void run() {
+                for (int n = 0; n < voiceCount; n++) {
+                    voices[n].stop();
+                }
+            }
+        });
+    }
+
+    /*****************************************************
+     * start a voice, on the sound thread: the first one that
+     * has finished, or else the one started longest ago
+     *****************************************************/
+    private void start(boolean loop, int times) {
+        int voice = 0;
+        for (int n = 0; n < voiceCount; n++) {
+            if (!voices[n].isActive()) {
+                voice = n;
+                break;
+            }
+            if (started[n] < started[voice]) voice = n;
+        }
+
+        Clip clip = voices[voice];
+        clip.stop();
         //reset the sound clip
         clip.setFramePosition(0);
+        started[voice] = System.nanoTime();
 
         //play sample with optional looping
-        if (looping)
+        if (loop)
             clip.loop(Clip.LOOP_CONTINUOUSLY);
         else
-            clip.loop(repeat);
+            clip.loop(times);
     }
 
-    public void stop() {
-        clip.stop();
+    private void closeVoices() {
+        for (int n = 0; n < voiceCount; n++) {
+            voices[n].close();
+            voices[n] = null;
+        }
+        voiceCount = 0;
+    }
+
+    //daemon thread so sounds never keep the program running
+    private static synchronized ExecutorService player() {
+        if (player == null) {
+            player = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "sound player");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return player;
     }
 
 }
@@ -0,0 +1,141 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* SpatialGrid class
+*****************************************************/
+import java.util.*;
+
+/*****************************************************
+ * uniform grid used as a collision broadphase. every
+ * sprite is binned into the cells its bounding rectangle
+ * covers, so a query only returns sprites that share a
+ * cell instead of every sprite in the game.
+ *****************************************************/
+class SpatialGrid {
+    //width and height of a single square cell in pixels
+    private int cellSize;
+
+    //hashed cell buckets, each one is a chain of entries
+    private int[] heads;
+    private int mask;
+
+    //entry storage: the sprite index and the next entry in the chain
+    private int[] items;
+    private int[] next;
+    private int entries;
+
+    //stamps used to report each sprite only once per query
+    private int[] marks;
+    private int stamp;
+
+    //sorted sprite indices returned by the last query
+    private int[] results;
+
+    public SpatialGrid(int cellSize) {
+        this.cellSize = cellSize;
+        heads = new int[256];
+        mask = heads.length - 1;
+        Arrays.fill(heads, -1);
+        items = new int[256];
+        next = new int[256];
+        marks = new int[256];
+        results = new int[64];
+        entries = 0;
+        stamp = 0;
+    }
+
+    public int cellSize() { return cellSize; }
+
+    //the sorted candidates produced by the last call to query
+    public int[] results() { return results; }
+
+    /*****************************************************
+     * empty the grid before the sprites are binned again
+     *****************************************************/
+    public void clear() {
+        //keep roughly two buckets per entry from the last pass
+        if (entries * 2 > heads.length) {
+            int size = heads.length;
+            while (size < entries * 2) size *= 2;
+            heads = new int[size];
+            mask = size - 1;
+        }
+        Arrays.fill(heads, -1);
+        entries = 0;
+    }
+
+    /*****************************************************
+     * add a sprite index to every cell its bounds cover
+     *****************************************************/
+    public void insert(int index, int x, int y, int width, int height) {
+        //an empty rectangle can never collide with anything
+        if (width <= 0 || height <= 0) return;
+
+        if (index >= marks.length) {
+            marks = Arrays.copyOf(marks, Math.max(index + 1, marks.length * 2));
+        }
+
+        int cx0 = Math.floorDiv(x, cellSize);
+        int cy0 = Math.floorDiv(y, cellSize);
+        int cx1 = Math.floorDiv(x + width - 1, cellSize);
+        int cy1 = Math.floorDiv(y + height - 1, cellSize);
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                if (entries == items.length) {
+                    items = Arrays.copyOf(items, entries * 2);
+                    next = Arrays.copyOf(next, entries * 2);
+                }
+                int bucket = hash(cx, cy);
+                items[entries] = index;
+                next[entries] = heads[bucket];
+                heads[bucket] = entries;
+                entries++;
+            }
+        }
+    }
+
+    /*****************************************************
+     * gather every sprite index sharing a cell with the
+     * passed rectangle; the indices are left in results()
+     * in ascending order and the count is returned
+     *****************************************************/
+    public int query(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) return 0;
+
+        //a new stamp invalidates the marks left by the last query
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            stamp = 1;
+        }
+
+        int count = 0;
+        int cx0 = Math.floorDiv(x, cellSize);
+        int cy0 = Math.floorDiv(y, cellSize);
+        int cx1 = Math.floorDiv(x + width - 1, cellSize);
+        int cy1 = Math.floorDiv(y + height - 1, cellSize);
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                for (int e = heads[hash(cx, cy)]; e != -1; e = next[e]) {
+                    int index = items[e];
+                    if (marks[index] != stamp) {
+                        marks[index] = stamp;
+                        if (count == results.length) {
+                            results = Arrays.copyOf(results, count * 2);
+                        }
+                        results[count++] = index;
+                    }
+                }
+            }
+        }
+
+        //callers expect the same order as the sprite list
+        Arrays.sort(results, 0, count);
+        return count;
+    }
+
+    //cells that hash to the same bucket only add extra candidates
+    private int hash(int cx, int cy) {
+        return ((cx * 73856093) ^ (cy * 19349663)) & mask;
+    }
+}
@@ -4,7 +4,6 @@
  * Sprite class
  **********************************************************/
 import java.awt.*;
-import java.applet.*;
 
 public class Sprite extends Object {
     private ImageEntity entity;
@@ -16,32 +15,183 @@ public class Sprite extends Object {
     protected boolean _collided;
     protected int _lifespan, _lifeage;
 
+    //position and angle before the last tick, used to draw in between
+    protected double lastX, lastY, lastAngle;
+    protected boolean hasLast;
+
+    //how far the sprite may go past the screen edges before the
+    //engine wraps it around to the other side, if it wraps at all
+    protected boolean wraps;
+    protected double wrapW, wrapH;
+
+    //the sprite's own point objects, which reset puts back
+    private Point2D ownPos, ownVel;
+
+    //cached bounding rectangle, refreshed when the position or image
+    //changes so collision tests don't allocate
+    protected int boundsX, boundsY, boundsW, boundsH;
+
+    //pixel mask of the current image, if one was made when it loaded
+    protected CollisionMask mask;
+
+    //how the engine draws the sprite, one of the RasterBlitter modes
+    protected int blitMode = RasterBlitter.JAVA2D;
+
+    //slot in a sprite store holding the movement state while the
+    //sprite is in a stored sprite list; null when it is not
+    SpriteStore store;
+    int slot;
+    private SpriteStore.StoredPoint storedPos, storedVel;
+
     //constructor
-    Sprite(Applet a, Graphics2D g2d) {
+    Sprite(Component a, Graphics2D g2d) {
         entity = new ImageEntity(a);
         entity.setGraphics(g2d);
         entity.setAlive(false);
-        pos = new Point2D(0, 0);
-        vel = new Point2D(0, 0);
+        ownPos = new Point2D(0, 0);
+        ownVel = new Point2D(0, 0);
+        pos = ownPos;
+        vel = ownVel;
+        rotRate = 0.0;
+        currentState = 0;
+        _collided = false;
+        _lifespan = 0;
+        _lifeage = 0;
+        hasLast = false;
+    }
+
+    /*****************************************************
+     * put the sprite back the way it was constructed so it
+     * can be reused; sub-classes must call super.reset()
+     *****************************************************/
+    public void reset() {
+        entity.setAlive(false);
+        entity.setX(0.0);
+        entity.setY(0.0);
+        entity.setFaceAngle(0.0);
+        entity.setMoveAngle(0.0);
+        pos = ownPos;
+        vel = ownVel;
+        pos.setX(0.0);
+        pos.setY(0.0);
+        vel.setX(0.0);
+        vel.setY(0.0);
+        setImage(null);
         rotRate = 0.0;
         currentState = 0;
+        sprType = 0;
         _collided = false;
         _lifespan = 0;
         _lifeage = 0;
+        hasLast = false;
+        wraps = false;
+        wrapW = 0.0;
+        wrapH = 0.0;
+        blitMode = RasterBlitter.JAVA2D;
     }
 
     //load bitmap file
     public void load(String filename) {
-        entity.load(filename);
+        entity.load(filename, true);
+        boundsW = entity.width();
+        boundsH = entity.height();
+        mask = CollisionMask.forImage(entity.getImage());
+        updateBounds();
+    }
+
+    /*****************************************************
+     * move the sprite's movement state into a store slot;
+     * from now on the store holds it
+     *****************************************************/
+    void attach(SpriteStore store, int slot) {
+        store.x[slot] = pos.X();
+        store.y[slot] = pos.Y();
+        store.vx[slot] = vel.X();
+        store.vy[slot] = vel.Y();
+        store.faceAngle[slot] = entity.getFaceAngle();
+        store.rotRate[slot] = rotRate;
+        store.lastX[slot] = lastX;
+        store.lastY[slot] = lastY;
+        store.lastAngle[slot] = lastAngle;
+        store.smooth[slot] = hasLast;
+        store.lifespan[slot] = _lifespan;
+        store.lifeage[slot] = _lifeage;
+        store.alive[slot] = entity.isAlive();
+        store.wraps[slot] = wraps;
+        store.wrapW[slot] = wrapW;
+        store.wrapH[slot] = wrapH;
+
+        if (storedPos == null) {
+            storedPos = new SpriteStore.StoredPoint(this, false);
+            storedVel = new SpriteStore.StoredPoint(this, true);
+        }
+        this.store = store;
+        this.slot = slot;
+        pos = storedPos;
+        vel = storedVel;
+    }
+
+    //copy the movement state back out of the store and let go of it
+    void detach() {
+        if (store == null) return;
+        int n = slot;
+        ownPos.setX(store.x[n]);
+        ownPos.setY(store.y[n]);
+        ownVel.setX(store.vx[n]);
+        ownVel.setY(store.vy[n]);
+        entity.setFaceAngle(store.faceAngle[n]);
+        rotRate = store.rotRate[n];
+        lastX = store.lastX[n];
+        lastY = store.lastY[n];
+        lastAngle = store.lastAngle[n];
+        hasLast = store.smooth[n];
+        _lifespan = store.lifespan[n];
+        _lifeage = store.lifeage[n];
+        entity.setAlive(store.alive[n]);
+        wraps = store.wraps[n];
+        wrapW = store.wrapW[n];
+        wrapH = store.wrapH[n];
+
+        store = null;
+        pos = ownPos;
+        vel = ownVel;
     }
 
     //perform affine transformations
     public void transform() {
         entity.setX(pos.X());
         entity.setY(pos.Y());
+        entity.setFaceAngle(faceAngle());
         entity.transform();
     }
 
+    //remember the current state before the sprite is moved
+    public void storeLast() {
+        if (store != null) {
+            store.lastX[slot] = pos.X();
+            store.lastY[slot] = pos.Y();
+            store.lastAngle[slot] = faceAngle();
+            store.smooth[slot] = true;
+            return;
+        }
+        lastX = pos.X();
+        lastY = pos.Y();
+        lastAngle = faceAngle();
+        hasLast = true;
+    }
+
+    //position and angle before the last tick, and whether they are set
+    public double lastX() { return (store != null) ? store.lastX[slot] : lastX; }
+    public double lastY() { return (store != null) ? store.lastY[slot] : lastY; }
+    public double lastAngle() {
+        return (store != null) ? store.lastAngle[slot] : lastAngle;
+    }
+    public boolean hasLast() { return (store != null) ? store.smooth[slot] : hasLast; }
+    private void clearLast() {
+        if (store != null) store.smooth[slot] = false;
+        else hasLast = false;
+    }
+
     //draw the image
     public void draw() {
         entity.g2d.drawImage(entity.getImage(),entity.at,entity.applet);
@@ -57,53 +207,154 @@ public class Sprite extends Object {
     public void updatePosition() {
         pos.setX(pos.X() + vel.X());
         pos.setY(pos.Y() + vel.Y());
+        updateBounds();
+    }
+
+    /*****************************************************
+     * copy the position into the cached bounds; the engine
+     * calls this after each update in case the game moved
+     * the sprite through its position() point
+     *****************************************************/
+    public void updateBounds() {
+        boundsX = (int)x();
+        boundsY = (int)y();
+    }
+
+    /*****************************************************
+     * have the engine wrap the sprite around the edges of
+     * the screen once it is more than the given distance
+     * past the left or top edge, or past the right or bottom
+     *****************************************************/
+    public void setWrapMargin(int w, int h) {
+        if (store != null) {
+            store.wraps[slot] = true;
+            store.wrapW[slot] = w;
+            store.wrapH[slot] = h;
+        }
+        else {
+            wraps = true;
+            wrapW = w;
+            wrapH = h;
+        }
+    }
+    public boolean wraps() { return (store != null) ? store.wraps[slot] : wraps; }
+
+    //wrap the sprite around a screen of the given size
+    public void wrap(int width, int height) {
+        if (!wraps()) return;
+        double w = (store != null) ? store.wrapW[slot] : wrapW;
+        double h = (store != null) ? store.wrapH[slot] : wrapH;
+        double x = x();
+        double y = y();
+        if (x < 0-w)
+            pos.setX(width);
+        else if (x > width)
+            pos.setX(0-w);
+        if (y < 0-h)
+            pos.setY(height);
+        else if (y > height)
+            pos.setY(0-h);
     }
 
     //methods related to automatic rotation factor
-    public double rotationRate() { return rotRate; }
-    public void setRotationRate(double rate) { rotRate = rate; }
+    public double rotationRate() {
+        return (store != null) ? store.rotRate[slot] : rotRate;
+    }
+    public void setRotationRate(double rate) {
+        if (store != null) store.rotRate[slot] = rate;
+        else rotRate = rate;
+    }
     public void updateRotation() {
-        setFaceAngle(faceAngle() + rotRate);
+        double rate = rotationRate();
+        setFaceAngle(faceAngle() + rate);
         if (faceAngle() < 0)
-            setFaceAngle(360 - rotRate);
+            setFaceAngle(360 - rate);
         else if (faceAngle() > 360)
-            setFaceAngle(rotRate);
+            setFaceAngle(rate);
     }
 
     //generic sprite state variable (alive, dead, collided, etc)
     public int state() { return currentState; }
     public void setState(int state) { currentState = state; }
 
-    //returns a bounding rectangle
-    public Rectangle getBounds() { return entity.getBounds(); }
+    //returns a bounding rectangle at the sprite's current position
+    public Rectangle getBounds() {
+        return new Rectangle(boundsX, boundsY, boundsW, boundsH);
+    }
+    //copies the bounding rectangle into one supplied by the caller
+    public Rectangle getBounds(Rectangle r) {
+        r.setBounds(boundsX, boundsY, boundsW, boundsH);
+        return r;
+    }
+    public int boundsX() { return boundsX; }
+    public int boundsY() { return boundsY; }
+    public int boundsWidth() { return boundsW; }
+    public int boundsHeight() { return boundsH; }
 
     //sprite position
     public Point2D position() { return pos; }
-    public void setPosition(Point2D pos) { this.pos = pos; }
+    public double x() { return (store != null) ? store.x[slot] : pos.X(); }
+    public double y() { return (store != null) ? store.y[slot] : pos.Y(); }
+    //a stored sprite copies the point rather than sharing it
+    public void setPosition(Point2D pos) {
+        if (store != null) {
+            setPosition(pos.X(), pos.Y());
+            return;
+        }
+        this.pos = pos;
+        hasLast = false;
+        updateBounds();
+    }
+    //set the position without creating a point object
+    public void setPosition(double x, double y) {
+        if (store == null) pos = ownPos;
+        pos.setX(x);
+        pos.setY(y);
+        clearLast();
+        updateBounds();
+    }
 
     //sprite movement velocity
     public Point2D velocity() { return vel; }
-    public void setVelocity(Point2D vel) { this.vel = vel; }
+    public void setVelocity(Point2D vel) {
+        if (store != null) setVelocity(vel.X(), vel.Y());
+        else this.vel = vel;
+    }
+    public void setVelocity(double x, double y) {
+        if (store == null) vel = ownVel;
+        vel.setX(x);
+        vel.setY(y);
+    }
 
     //returns the center of the sprite as a Point2D
     public Point2D center() {
-        return(new Point2D(entity.getCenterX(),entity.getCenterY()));
+        return(new Point2D(centerX(), centerY()));
     }
+    public double centerX() { return x() + boundsW / 2; }
+    public double centerY() { return y() + boundsH / 2; }
 
     //generic variable for selectively using sprites
-    public boolean alive() { return entity.isAlive(); }
-    public void setAlive(boolean alive) { entity.setAlive(alive); }
+    public boolean alive() {
+        return (store != null) ? store.alive[slot] : entity.isAlive();
+    }
+    public void setAlive(boolean alive) {
+        if (store != null) store.alive[slot] = alive;
+        else entity.setAlive(alive);
+    }
 
     //face angle indicates which direction sprite is facing
-    public double faceAngle() { return entity.getFaceAngle(); }
+    public double faceAngle() {
+        return (store != null) ? store.faceAngle[slot] : entity.getFaceAngle();
+    }
     public void setFaceAngle(double angle) {
-        entity.setFaceAngle(angle);
+        if (store != null) store.faceAngle[slot] = angle;
+        else entity.setFaceAngle(angle);
     }
     public void setFaceAngle(float angle) {
-        entity.setFaceAngle((double) angle);
+        setFaceAngle((double) angle);
     }
     public void setFaceAngle(int angle) {
-        entity.setFaceAngle((double) angle);
+        setFaceAngle((double) angle);
     }
 
     //move angle indicates direction sprite is moving
@@ -119,26 +370,70 @@ public class Sprite extends Object {
     }
 
     //returns the source image width/height
-    public int imageWidth() { return entity.width(); }
-    public int imageHeight() { return entity.height(); }
+    public int imageWidth() { return boundsW; }
+    public int imageHeight() { return boundsH; }
+
+    /*****************************************************
+     * returns true if the bounds overlap the given rectangle;
+     * like Rectangle.intersects, empty rectangles never do
+     *****************************************************/
+    public boolean overlaps(int x, int y, int width, int height) {
+        if (boundsW <= 0 || boundsH <= 0 || width <= 0 || height <= 0)
+            return false;
+        return x < boundsX + boundsW && boundsX < x + width
+            && y < boundsY + boundsH && boundsY < y + height;
+    }
 
     //check for collision with a rectangular shape
     public boolean collidesWith(Rectangle rect) {
-        return (rect.intersects(getBounds()));
+        return overlaps(rect.x, rect.y, rect.width, rect.height);
     }
     //check for collision with another sprite
     public boolean collidesWith(Sprite sprite) {
-        return (getBounds().intersects(sprite.getBounds()));
+        return overlaps(sprite.boundsX, sprite.boundsY,
+                        sprite.boundsW, sprite.boundsH);
+    }
+    /*****************************************************
+     * check for collision with another sprite down to the
+     * pixel: the rectangles must overlap first, then the
+     * masks at each sprite's angle are compared. sprites
+     * without a mask fall back to the rectangle test.
+     *****************************************************/
+    public boolean collidesPixels(Sprite sprite) {
+        if (!collidesWith(sprite)) return false;
+        if (mask == null || sprite.mask == null) return true;
+        return CollisionMask.overlap(
+            mask.rotated(faceAngle()), boundsX, boundsY,
+            sprite.mask.rotated(sprite.faceAngle()),
+            sprite.boundsX, sprite.boundsY);
     }
     //check for collision with a point
     public boolean collidesWith(Point2D point) {
-        return (getBounds().contains(point.X(), point.Y()));
+        double x = point.X();
+        double y = point.Y();
+        return boundsW > 0 && boundsH > 0 && x >= boundsX && y >= boundsY
+            && x < boundsX + boundsW && y < boundsY + boundsH;
     }
 
-    public Applet applet() { return entity.applet; }
+    public Component applet() { return entity.applet; }
     public Graphics2D graphics() { return entity.g2d; }
     public Image image() { return entity.image; }
-    public void setImage(Image image) { entity.setImage(image); }
+    public void setImage(Image image) {
+        if (image != entity.getImage()) {
+            mask = CollisionMask.forImage(image);
+        }
+        entity.setImage(image);
+        boundsW = entity.width();
+        boundsH = entity.height();
+    }
+
+    /*****************************************************
+     * draw through Graphics2D (JAVA2D), or straight into the
+     * back buffer (BLEND or ALPHA_TEST) whenever the sprite
+     * is unrotated or has a cached rotation
+     *****************************************************/
+    public int blitMode() { return blitMode; }
+    public void setBlitMode(int mode) { blitMode = mode; }
 
     public int spriteType() { return sprType; }
     public void setSpriteType(int type) { sprType = type; }
@@ -146,18 +441,30 @@ public class Sprite extends Object {
     public boolean collided() { return _collided; }
     public void setCollided(boolean collide) { _collided = collide; }
 
-    public int lifespan() { return _lifespan; }
-    public void setLifespan(int life) { _lifespan = life; }
-    public int lifeage() { return _lifeage; }
-    public void setLifeage(int age) { _lifeage = age; }
+    public int lifespan() {
+        return (store != null) ? store.lifespan[slot] : _lifespan;
+    }
+    public void setLifespan(int life) {
+        if (store != null) store.lifespan[slot] = life;
+        else _lifespan = life;
+    }
+    public int lifeage() {
+        return (store != null) ? store.lifeage[slot] : _lifeage;
+    }
+    public void setLifeage(int age) {
+        if (store != null) store.lifeage[slot] = age;
+        else _lifeage = age;
+    }
     public void updateLifetime() {
         //if lifespan is used, it must be > 0
-        if (_lifespan > 0) {
-            _lifeage++;
-            if (_lifeage > _lifespan) {
+        int span = lifespan();
+        if (span > 0) {
+            int age = lifeage() + 1;
+            if (age > span) {
                 setAlive(false);
-                _lifeage = 0;
+                age = 0;
             }
+            setLifeage(age);
         }
     }
 
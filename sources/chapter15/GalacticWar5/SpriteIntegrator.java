@@ -0,0 +1,19 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* SpriteIntegrator interface
+*****************************************************/
+
+/*****************************************************
+ * the loops that step every slot of a sprite store once
+ * per tick. ScalarIntegrator works anywhere; the Vector
+ * API version in the simd folder is used when available.
+ * both must give exactly the same results.
+ *****************************************************/
+interface SpriteIntegrator {
+    //remember, move, wrap and turn the live sprites in the first count slots
+    void integrate(SpriteStore store, int count);
+
+    //age the live sprites, putting the slots that died in died
+    int age(SpriteStore store, int count, int[] died);
+}
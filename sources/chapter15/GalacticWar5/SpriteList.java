@@ -0,0 +1,235 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* SpriteList class
+*****************************************************/
+import java.util.*;
+
+/*****************************************************
+ * array-backed container for the game's sprites. sprites
+ * are stored contiguously so indexed access is constant
+ * time, and every sprite is given a generational handle
+ * that stays valid while it is in the list and goes stale
+ * once it is removed. sprites that came from a pool are
+ * handed back to it when they leave the list.
+ *
+ * sprites added while the list is being walked by index
+ * are appended to the end, so a loop that checks size()
+ * on every pass will visit them too. removal should only
+ * happen between passes.
+ *
+ * a list can be given a SpriteStore, in which case the
+ * movement state of each sprite lives in the store slot
+ * matching its position in the list, and moves with it.
+ *****************************************************/
+class SpriteList {
+    //a handle packs a slot id with the slot's generation
+    static final int NO_HANDLE = -1;
+    private static final int ID_BITS = 20;
+    private static final int ID_MASK = (1 << ID_BITS) - 1;
+    private static final int GEN_MASK = 0x7FF;
+
+    //dense sprite storage and the slot id of each entry
+    private AnimatedSprite[] sprites;
+    private int[] ids;
+    private int count;
+
+    //slot tables: dense index and generation of each slot id
+    private int[] dense;
+    private int[] generations;
+    private int slots;
+
+    //slot ids freed by removed sprites
+    private int[] freeIds;
+    private int freeCount;
+
+    //primitive storage for the sprites' movement state, if used
+    private SpriteStore store;
+
+    public SpriteList() {
+        sprites = new AnimatedSprite[64];
+        ids = new int[64];
+        dense = new int[64];
+        generations = new int[64];
+        freeIds = new int[64];
+        count = 0;
+        slots = 0;
+        freeCount = 0;
+    }
+
+    //number of sprites in the list
+    public int size() { return count; }
+    public boolean isEmpty() { return count == 0; }
+
+    public SpriteStore store() { return store; }
+
+    /*****************************************************
+     * start or stop keeping the sprites' movement state in
+     * a store; sprites already in the list move across
+     *****************************************************/
+    public void setStore(SpriteStore store) {
+        for (int n = 0; n < count; n++) {
+            sprites[n].detach();
+        }
+        this.store = store;
+        if (store != null) {
+            store.ensureCapacity(sprites.length);
+            for (int n = 0; n < count; n++) {
+                sprites[n].attach(store, n);
+            }
+        }
+    }
+
+    //sprite at a position in the list
+    public AnimatedSprite get(int index) {
+        if (index >= count) throw new IndexOutOfBoundsException("" + index);
+        return sprites[index];
+    }
+
+    /*****************************************************
+     * append a sprite and return its handle
+     *****************************************************/
+    public int add(AnimatedSprite sprite) {
+        if (count == sprites.length) {
+            sprites = Arrays.copyOf(sprites, count * 2);
+            ids = Arrays.copyOf(ids, count * 2);
+        }
+
+        //reuse a freed slot id if there is one
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        }
+        else {
+            if (slots > ID_MASK) throw new IllegalStateException("too many sprites");
+            if (slots == dense.length) {
+                dense = Arrays.copyOf(dense, slots * 2);
+                generations = Arrays.copyOf(generations, slots * 2);
+            }
+            id = slots++;
+        }
+
+        sprites[count] = sprite;
+        if (store != null) {
+            store.ensureCapacity(count + 1);
+            sprite.attach(store, count);
+        }
+        ids[count] = id;
+        dense[id] = count;
+        count++;
+        return (generations[id] << ID_BITS) | id;
+    }
+
+    /*****************************************************
+     * handle of the sprite at a position in the list
+     *****************************************************/
+    public int handle(int index) {
+        if (index >= count) throw new IndexOutOfBoundsException("" + index);
+        int id = ids[index];
+        return (generations[id] << ID_BITS) | id;
+    }
+
+    //returns true if the handle still refers to a sprite in the list
+    public boolean isValid(int handle) {
+        return indexOf(handle) != -1;
+    }
+
+    //returns the sprite for a handle, or null if it has been removed
+    public AnimatedSprite lookup(int handle) {
+        int index = indexOf(handle);
+        return (index == -1) ? null : sprites[index];
+    }
+
+    //returns the current position of a handle's sprite, or -1
+    public int indexOf(int handle) {
+        if (handle < 0) return -1;
+        int id = handle & ID_MASK;
+        if (id >= slots) return -1;
+        if (generations[id] != (handle >>> ID_BITS)) return -1;
+        return dense[id];
+    }
+
+    /*****************************************************
+     * remove the sprite at a position by moving the last
+     * sprite into its place
+     *****************************************************/
+    public void removeAt(int index) {
+        if (index >= count) throw new IndexOutOfBoundsException("" + index);
+        AnimatedSprite spr = sprites[index];
+        spr.detach();
+        releaseSlot(ids[index]);
+
+        count--;
+        if (index != count) {
+            sprites[index] = sprites[count];
+            ids[index] = ids[count];
+            dense[ids[index]] = index;
+            if (store != null) {
+                store.move(count, index);
+                sprites[index].slot = index;
+            }
+        }
+        sprites[count] = null;
+        spr.recycle();
+    }
+
+    //remove a sprite by handle; stale handles are ignored
+    public boolean remove(int handle) {
+        int index = indexOf(handle);
+        if (index == -1) return false;
+        removeAt(index);
+        return true;
+    }
+
+    /*****************************************************
+     * remove every dead sprite in one pass, keeping the
+     * remaining sprites in order so the draw order and the
+     * ship at the head of the list are preserved
+     *****************************************************/
+    public int purge() {
+        int kept = 0;
+        for (int n = 0; n < count; n++) {
+            AnimatedSprite spr = sprites[n];
+            if (spr.alive()) {
+                if (store != null && kept != n) {
+                    store.move(n, kept);
+                    spr.slot = kept;
+                }
+                sprites[kept] = spr;
+                ids[kept] = ids[n];
+                dense[ids[kept]] = kept;
+                kept++;
+            }
+            else {
+                spr.detach();
+                releaseSlot(ids[n]);
+                spr.recycle();
+            }
+        }
+        Arrays.fill(sprites, kept, count, null);
+        int removed = count - kept;
+        count = kept;
+        return removed;
+    }
+
+    //remove every sprite, invalidating all handles
+    public void clear() {
+        for (int n = 0; n < count; n++) {
+            sprites[n].detach();
+            releaseSlot(ids[n]);
+            sprites[n].recycle();
+        }
+        Arrays.fill(sprites, 0, count, null);
+        count = 0;
+    }
+
+    //bump the generation so old handles go stale, then free the id
+    private void releaseSlot(int id) {
+        generations[id] = (generations[id] + 1) & GEN_MASK;
+        dense[id] = -1;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+}
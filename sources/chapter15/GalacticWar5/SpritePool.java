@@ -0,0 +1,74 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* SpritePool class
+*****************************************************/
+import java.awt.*;
+
+/*****************************************************
+ * keeps dead sprites of one kind around for reuse so the
+ * game doesn't create new ones during play. sprites taken
+ * from a pool go back to it automatically when they are
+ * purged from the game's sprite list. a pool holds at most
+ * its capacity; extra sprites are left to the collector.
+ *****************************************************/
+class SpritePool {
+    private Component applet;
+    private Graphics2D g2d;
+
+    //sprites waiting to be reused
+    private AnimatedSprite[] free;
+    private int count;
+
+    //how many sprites this pool has ever had to create
+    private int created;
+
+    public SpritePool(Component applet, Graphics2D g2d, int capacity) {
+        this.applet = applet;
+        this.g2d = g2d;
+        free = new AnimatedSprite[capacity];
+        count = 0;
+        created = 0;
+    }
+
+    public int capacity() { return free.length; }
+    public int available() { return count; }
+    public int created() { return created; }
+
+    //create sprites up front so the first wave doesn't allocate
+    public void fill(int number) {
+        while (count < free.length && number-- > 0) {
+            AnimatedSprite spr = new AnimatedSprite(applet, g2d);
+            created++;
+            free[count++] = spr;
+        }
+    }
+
+    /*****************************************************
+     * returns a reset sprite, reusing one when possible
+     *****************************************************/
+    public AnimatedSprite acquire() {
+        AnimatedSprite spr;
+        if (count > 0) {
+            spr = free[--count];
+            free[count] = null;
+        }
+        else {
+            spr = new AnimatedSprite(applet, g2d);
+            created++;
+        }
+        spr.setPool(this);
+        return spr;
+    }
+
+    /*****************************************************
+     * hand a sprite back to the pool; it is reset here so
+     * it doesn't hold on to old images or positions
+     *****************************************************/
+    public void release(AnimatedSprite spr) {
+        spr.reset();
+        if (count < free.length) {
+            free[count++] = spr;
+        }
+    }
+}
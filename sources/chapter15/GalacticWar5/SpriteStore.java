@@ -0,0 +1,183 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* SpriteStore class
+*****************************************************/
+import java.util.*;
+
+/*****************************************************
+ * movement state of every sprite in a sprite list, kept
+ * in one primitive array per value instead of inside each
+ * sprite. slot n holds the sprite at position n in the
+ * list, so stepping the whole world is a single pass down
+ * a few arrays. a sprite that has been given a slot reads
+ * and writes its position, velocity, angle, rotation,
+ * lifetime and alive flag here; its own copies are only
+ * used again once it leaves the list.
+ *****************************************************/
+class SpriteStore {
+    //position, velocity and rotation
+    double[] x, y;
+    double[] vx, vy;
+    double[] faceAngle, rotRate;
+
+    //position and angle before the last tick
+    double[] lastX, lastY, lastAngle;
+    boolean[] smooth;
+
+    //lifetime and alive flag
+    int[] lifespan, lifeage;
+    boolean[] alive;
+
+    //screen wrapping and how far past the edges each sprite may go
+    boolean[] wraps;
+    double[] wrapW, wrapH;
+    double screenWidth, screenHeight;
+
+    //the loops that step every slot, vectorized if possible
+    private static SpriteIntegrator integrator = pickIntegrator();
+
+    public SpriteStore(int capacity, int screenWidth, int screenHeight) {
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        faceAngle = new double[capacity];
+        rotRate = new double[capacity];
+        lastX = new double[capacity];
+        lastY = new double[capacity];
+        lastAngle = new double[capacity];
+        smooth = new boolean[capacity];
+        lifespan = new int[capacity];
+        lifeage = new int[capacity];
+        alive = new boolean[capacity];
+        wraps = new boolean[capacity];
+        wrapW = new double[capacity];
+        wrapH = new double[capacity];
+    }
+
+    /*****************************************************
+     * use the Vector API version of the loops when it has
+     * been compiled and the jdk.incubator.vector module is
+     * present (run with --add-modules jdk.incubator.vector),
+     * unless the game.scalar property is set
+     *****************************************************/
+    private static SpriteIntegrator pickIntegrator() {
+        if (!Boolean.getBoolean("game.scalar")) {
+            try {
+                return (SpriteIntegrator) Class.forName("VectorIntegrator")
+                    .getDeclaredConstructor().newInstance();
+            }
+            catch (Exception e) { }
+            catch (LinkageError e) { }
+        }
+        return new ScalarIntegrator();
+    }
+
+    public static SpriteIntegrator integrator() { return integrator; }
+    public static void setIntegrator(SpriteIntegrator loops) { integrator = loops; }
+
+    public int capacity() { return x.length; }
+
+    //make room for at least the given number of slots
+    public void ensureCapacity(int size) {
+        if (size <= x.length) return;
+        size = Math.max(size, x.length * 2);
+        x = Arrays.copyOf(x, size);
+        y = Arrays.copyOf(y, size);
+        vx = Arrays.copyOf(vx, size);
+        vy = Arrays.copyOf(vy, size);
+        faceAngle = Arrays.copyOf(faceAngle, size);
+        rotRate = Arrays.copyOf(rotRate, size);
+        lastX = Arrays.copyOf(lastX, size);
+        lastY = Arrays.copyOf(lastY, size);
+        lastAngle = Arrays.copyOf(lastAngle, size);
+        smooth = Arrays.copyOf(smooth, size);
+        lifespan = Arrays.copyOf(lifespan, size);
+        lifeage = Arrays.copyOf(lifeage, size);
+        alive = Arrays.copyOf(alive, size);
+        wraps = Arrays.copyOf(wraps, size);
+        wrapW = Arrays.copyOf(wrapW, size);
+        wrapH = Arrays.copyOf(wrapH, size);
+    }
+
+    //copy every value from one slot to another
+    public void move(int from, int to) {
+        x[to] = x[from];
+        y[to] = y[from];
+        vx[to] = vx[from];
+        vy[to] = vy[from];
+        faceAngle[to] = faceAngle[from];
+        rotRate[to] = rotRate[from];
+        lastX[to] = lastX[from];
+        lastY[to] = lastY[from];
+        lastAngle[to] = lastAngle[from];
+        smooth[to] = smooth[from];
+        lifespan[to] = lifespan[from];
+        lifeage[to] = lifeage[from];
+        alive[to] = alive[from];
+        wraps[to] = wraps[from];
+        wrapW[to] = wrapW[from];
+        wrapH[to] = wrapH[from];
+    }
+
+    /*****************************************************
+     * move, wrap and turn every live sprite in the first
+     * count slots, remembering where each one was. this does
+     * the same as Sprite.storeLast, updatePosition, wrap and
+     * updateRotation for each sprite.
+     *****************************************************/
+    public void integrate(int count) {
+        integrator.integrate(this, count);
+    }
+
+    /*****************************************************
+     * count up the age of every live sprite with a lifespan
+     * and kill the ones that are too old, like
+     * Sprite.updateLifetime; the slots of sprites that died
+     * are put in died and the number of them is returned
+     *****************************************************/
+    public int age(int count, int[] died) {
+        return integrator.age(this, count, died);
+    }
+
+    /*****************************************************
+     * a position or velocity point that reads and writes a
+     * sprite's slot, so code holding on to position() or
+     * velocity() keeps working while the sprite is stored
+     *****************************************************/
+    static class StoredPoint extends Point2D {
+        private Sprite sprite;
+        private boolean velocity;
+
+        StoredPoint(Sprite sprite, boolean velocity) {
+            this.sprite = sprite;
+            this.velocity = velocity;
+        }
+
+        double X() {
+            SpriteStore s = sprite.store;
+            return velocity ? s.vx[sprite.slot] : s.x[sprite.slot];
+        }
+        double Y() {
+            SpriteStore s = sprite.store;
+            return velocity ? s.vy[sprite.slot] : s.y[sprite.slot];
+        }
+        public void setX(double x) {
+            SpriteStore s = sprite.store;
+            if (velocity) s.vx[sprite.slot] = x;
+            else s.x[sprite.slot] = x;
+        }
+        public void setY(double y) {
+            SpriteStore s = sprite.store;
+            if (velocity) s.vy[sprite.slot] = y;
+            else s.y[sprite.slot] = y;
+        }
+        public void setX(float x) { setX((double) x); }
+        public void setX(int x) { setX((double) x); }
+        public void setY(float y) { setY((double) y); }
+        public void setY(int y) { setY((double) y); }
+    }
+}
@@ -0,0 +1,88 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* TimingHistogram class
+*****************************************************/
+
+/*****************************************************
+ * histogram of nanosecond timings. values are grouped by
+ * power of two, and each power of two is split into 16
+ * equal buckets, so percentiles are accurate to about 6%.
+ * recording a value never allocates. one thread should
+ * record into a histogram; others may read it at any time.
+ *****************************************************/
+class TimingHistogram {
+    //16 sub-buckets for each of the 64 powers of two
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private long[] counts = new long[64 * SUB_COUNT];
+    private long total;
+    private long sum;
+    private long max;
+    private long last;
+
+    //add one timing to the histogram
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[bucket(nanos)]++;
+        total++;
+        sum += nanos;
+        last = nanos;
+        if (nanos > max) max = nanos;
+    }
+
+    public long count() { return total; }
+    public long max() { return max; }
+    public long last() { return last; }
+    public long mean() { return (total == 0) ? 0 : sum / total; }
+    public long p50() { return percentile(50.0); }
+    public long p99() { return percentile(99.0); }
+
+    /*****************************************************
+     * returns the upper bound of the bucket holding the
+     * given percentile, or 0 if nothing has been recorded
+     *****************************************************/
+    public long percentile(double pct) {
+        if (total == 0) return 0;
+        long rank = (long)Math.ceil(total * pct / 100.0);
+        if (rank < 1) rank = 1;
+
+        long seen = 0;
+        for (int n = 0; n < counts.length; n++) {
+            seen += counts[n];
+            if (seen >= rank) {
+                return Math.min(upperBound(n), max);
+            }
+        }
+        return max;
+    }
+
+    //forget everything recorded so far
+    public void reset() {
+        for (int n = 0; n < counts.length; n++) {
+            counts[n] = 0;
+        }
+        total = 0;
+        sum = 0;
+        max = 0;
+        last = 0;
+    }
+
+    //values below 16 get a bucket each, larger ones share by magnitude
+    private static int bucket(long value) {
+        if (value < SUB_COUNT) return (int)value;
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int)(value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return ((exp - SUB_BITS + 1) << SUB_BITS) + sub;
+    }
+
+    //largest value that falls into a bucket
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int exp = (bucket >>> SUB_BITS) + SUB_BITS - 1;
+        long sub = bucket & (SUB_COUNT - 1);
+        long base = (1L << exp) | (sub << (exp - SUB_BITS));
+        return base + (1L << (exp - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,83 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* Trig class
+*****************************************************/
+
+/*****************************************************
+ * sine and cosine of angles in degrees, looked up in a
+ * table instead of calling Math.sin and Math.cos. angles
+ * are rounded to the nearest step of the table, so with
+ * the default 16 steps per degree no result is off by more
+ * than about 0.0006. whole degrees from -360 to 360 give
+ * exactly what Math gave the old angle * PI / 180 code, so
+ * game play does not change. the table can be made finer
+ * or coarser; the engine uses it for velocities and for
+ * drawing.
+ *****************************************************/
+class Trig {
+    //default number of table entries per degree
+    static final int DEFAULT_STEPS = 16;
+
+    private static volatile Table table = new Table(DEFAULT_STEPS);
+
+    //sine and cosine of every step from -360 to 360 degrees
+    private static class Table {
+        final int steps;
+        final int turn;
+        final double[] sin, cos;
+
+        Table(int steps) {
+            this.steps = steps;
+            turn = 360 * steps;
+            sin = new double[2 * turn + 1];
+            cos = new double[2 * turn + 1];
+            for (int n = 0; n < sin.length; n++) {
+                double angle = (double)(n - turn) / steps;
+                sin[n] = Math.sin(angle * Math.PI / 180);
+                cos[n] = Math.cos(angle * Math.PI / 180);
+            }
+        }
+    }
+
+    //number of table entries per degree
+    public static int resolution() { return table.steps; }
+
+    /*****************************************************
+     * rebuild the table with the given number of entries
+     * per degree; callers already looking values up carry
+     * on with the old table until they are done
+     *****************************************************/
+    public static void setResolution(int stepsPerDegree) {
+        if (stepsPerDegree < 1)
+            throw new IllegalArgumentException("resolution must be at least 1");
+        if (stepsPerDegree != table.steps) {
+            table = new Table(stepsPerDegree);
+        }
+    }
+
+    //sine of an angle in degrees
+    public static double sin(double degrees) {
+        Table t = table;
+        return t.sin[index(t, degrees)];
+    }
+
+    //cosine of an angle in degrees
+    public static double cos(double degrees) {
+        Table t = table;
+        return t.cos[index(t, degrees)];
+    }
+
+    /*****************************************************
+     * table entry nearest to an angle. angles past a full
+     * turn either way are brought back into range first,
+     * which is the slow way round.
+     *****************************************************/
+    private static int index(Table t, double degrees) {
+        int n = (int) Math.floor(degrees * t.steps + 0.5) + t.turn;
+        if (n < 0 || n > 2 * t.turn) {
+            n = Math.floorMod(n, t.turn) + t.turn;
+        }
+        return n;
+    }
+}
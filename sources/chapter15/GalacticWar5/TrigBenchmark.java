@@ -0,0 +1,126 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* TrigBenchmark class
+*****************************************************/
+import java.awt.geom.*;
+import java.util.*;
+
+/*****************************************************
+ * measures how far the Trig tables are from Math.sin and
+ * Math.cos at a few resolutions, and how long each takes
+ * for velocities and for sprite transforms.
+ *
+ * usage: java TrigBenchmark [calls]
+ *****************************************************/
+public class TrigBenchmark {
+
+    public static void main(String[] args) {
+        int calls = (args.length > 0) ? Integer.parseInt(args[0]) : 10000000;
+
+        //random angles like the ones sprites end up with
+        Random rand = new Random(1);
+        double[] angles = new double[4096];
+        for (int n = 0; n < angles.length; n++) {
+            angles[n] = rand.nextDouble() * 720 - 360;
+        }
+
+        //accuracy over a fine sweep of angles
+        int[] resolutions = { 1, 4, 16, 64 };
+        for (int r = 0; r < resolutions.length; r++) {
+            Trig.setResolution(resolutions[r]);
+            double worst = 0, whole = 0;
+            for (int n = -3600000; n <= 3600000; n++) {
+                double deg = n / 10000.0;
+                double rad = deg * Math.PI / 180;
+                double err = Math.max(Math.abs(Trig.sin(deg) - Math.sin(rad)),
+                                      Math.abs(Trig.cos(deg) - Math.cos(rad)));
+                worst = Math.max(worst, err);
+                if (n % 10000 == 0) whole = Math.max(whole, err);
+            }
+            System.out.println(resolutions[r] + " steps/degree: max error " + worst
+                + ", at whole degrees " + whole);
+        }
+        Trig.setResolution(Trig.DEFAULT_STEPS);
+
+        //speed, best of five rounds after a warm-up round
+        AffineTransform at = new AffineTransform();
+        for (int round = 0; round < 6; round++) {
+            long math = timeMath(angles, calls);
+            long table = timeTable(angles, calls);
+            long rotate = timeRotate(angles, calls / 4, at);
+            long matrix = timeMatrix(angles, calls / 4, at);
+            if (round == 0) continue;
+            System.out.println("velocity: Math " + perCall(math, calls)
+                + " ns, Trig " + perCall(table, calls) + " ns ("
+                + ratio(math, table) + "x); transform: rotate "
+                + perCall(rotate, calls / 4) + " ns, table "
+                + perCall(matrix, calls / 4) + " ns ("
+                + ratio(rotate, matrix) + "x)");
+        }
+    }
+
+    //the old calcAngleMoveX/Y
+    private static long timeMath(double[] angles, int calls) {
+        double sum = 0;
+        long start = System.nanoTime();
+        for (int n = 0; n < calls; n++) {
+            double angle = angles[n & 4095];
+            sum += Math.cos(angle * Math.PI / 180) + Math.sin(angle * Math.PI / 180);
+        }
+        long time = System.nanoTime() - start;
+        if (sum == 42) System.out.println();
+        return time;
+    }
+
+    private static long timeTable(double[] angles, int calls) {
+        double sum = 0;
+        long start = System.nanoTime();
+        for (int n = 0; n < calls; n++) {
+            double angle = angles[n & 4095];
+            sum += Trig.cos(angle) + Trig.sin(angle);
+        }
+        long time = System.nanoTime() - start;
+        if (sum == 42) System.out.println();
+        return time;
+    }
+
+    //the old ImageEntity.transform
+    private static long timeRotate(double[] angles, int calls, AffineTransform at) {
+        double sum = 0;
+        long start = System.nanoTime();
+        for (int n = 0; n < calls; n++) {
+            at.setToIdentity();
+            at.translate(400 + 32, 300 + 32);
+            at.rotate(Math.toRadians(angles[n & 4095]));
+            at.translate(-32, -32);
+            sum += at.getTranslateX();
+        }
+        long time = System.nanoTime() - start;
+        if (sum == 42) System.out.println();
+        return time;
+    }
+
+    private static long timeMatrix(double[] angles, int calls, AffineTransform at) {
+        double sum = 0;
+        long start = System.nanoTime();
+        for (int n = 0; n < calls; n++) {
+            double cos = Trig.cos(angles[n & 4095]);
+            double sin = Trig.sin(angles[n & 4095]);
+            at.setTransform(cos, sin, -sin, cos,
+                432 - cos * 32 + sin * 32, 332 - sin * 32 - cos * 32);
+            sum += at.getTranslateX();
+        }
+        long time = System.nanoTime() - start;
+        if (sum == 42) System.out.println();
+        return time;
+    }
+
+    private static double perCall(long nanos, int calls) {
+        return Math.round(nanos * 100.0 / calls) / 100.0;
+    }
+
+    private static double ratio(long a, long b) {
+        return Math.round(a * 100.0 / b) / 100.0;
+    }
+}
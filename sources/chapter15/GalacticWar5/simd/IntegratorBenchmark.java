@@ -0,0 +1,76 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* IntegratorBenchmark class
+*****************************************************/
+import java.util.*;
+
+/*****************************************************
+ * times the scalar and vector sprite store loops against
+ * each other on the same made-up world, and checks that
+ * they end up with exactly the same arrays.
+ *
+ * usage: java --add-modules jdk.incubator.vector
+ *            IntegratorBenchmark [sprites] [ticks]
+ *****************************************************/
+public class IntegratorBenchmark {
+
+    public static void main(String[] args) {
+        int sprites = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        int ticks = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+
+        SpriteIntegrator scalar = new ScalarIntegrator();
+        SpriteIntegrator vector = new VectorIntegrator();
+        SpriteStore a = world(sprites);
+        SpriteStore b = world(sprites);
+        int[] died = new int[sprites];
+
+        //warm both up before timing them, then take the best of five
+        for (int round = 0; round < 6; round++) {
+            long s = time(scalar, a, sprites, ticks, died);
+            long v = time(vector, b, sprites, ticks, died);
+            if (round == 0) continue;
+            System.out.println("scalar " + s / ticks / 1000 + " us/tick, vector "
+                + v / ticks / 1000 + " us/tick ("
+                + Math.round(s * 100.0 / v) / 100.0 + "x)");
+        }
+
+        boolean same = Arrays.equals(a.x, b.x) && Arrays.equals(a.y, b.y)
+            && Arrays.equals(a.faceAngle, b.faceAngle)
+            && Arrays.equals(a.lastX, b.lastX) && Arrays.equals(a.lastY, b.lastY)
+            && Arrays.equals(a.lifeage, b.lifeage) && Arrays.equals(a.alive, b.alive);
+        System.out.println(same ? "results match" : "RESULTS DIFFER");
+    }
+
+    //integrate and age every sprite for a number of ticks
+    private static long time(SpriteIntegrator loops, SpriteStore store,
+        int count, int ticks, int[] died)
+    {
+        long start = System.nanoTime();
+        for (int n = 0; n < ticks; n++) {
+            loops.integrate(store, count);
+            loops.age(store, count, died);
+        }
+        return System.nanoTime() - start;
+    }
+
+    //a screen full of wrapping sprites, some with lifespans
+    private static SpriteStore world(int count) {
+        Random rand = new Random(1);
+        SpriteStore store = new SpriteStore(count, 800, 600);
+        for (int n = 0; n < count; n++) {
+            store.x[n] = rand.nextInt(800);
+            store.y[n] = rand.nextInt(600);
+            store.vx[n] = rand.nextDouble() * 4 - 2;
+            store.vy[n] = rand.nextDouble() * 4 - 2;
+            store.faceAngle[n] = rand.nextInt(360);
+            store.rotRate[n] = rand.nextDouble();
+            store.wraps[n] = true;
+            store.wrapW[n] = 31 + rand.nextInt(64);
+            store.wrapH[n] = store.wrapW[n];
+            store.lifespan[n] = (n % 4 == 0) ? 1000000 : 0;
+            store.alive[n] = true;
+        }
+        return store;
+    }
+}
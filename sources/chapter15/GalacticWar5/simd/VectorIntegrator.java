@@ -0,0 +1,122 @@
+/*****************************************************
+* Beginning Java Game Programming, 3rd Edition
+* by Jonathan S. Harbour
+* VectorIntegrator class
+*****************************************************/
+import jdk.incubator.vector.*;
+
+/*****************************************************
+ * the sprite store loops written with the Vector API, so
+ * a whole register of slots is stepped at once. dead
+ * slots are left alone by blending the old values back
+ * in. the results are exactly those of ScalarIntegrator.
+ *
+ * this needs the jdk.incubator.vector module, so it is
+ * kept out of the main folder and built on its own:
+ *
+ *   javac --add-modules jdk.incubator.vector -cp . -d . simd/*.java
+ *   java --add-modules jdk.incubator.vector HeadlessRunner ...
+ *
+ * SpriteStore picks it up by name when it is there.
+ *****************************************************/
+class VectorIntegrator implements SpriteIntegrator {
+    private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED;
+
+    public void integrate(SpriteStore s, int count) {
+        double[] x = s.x, y = s.y;
+        double[] vx = s.vx, vy = s.vy;
+        double[] faceAngle = s.faceAngle, rotRate = s.rotRate;
+        double[] lastX = s.lastX, lastY = s.lastY, lastAngle = s.lastAngle;
+        double[] wrapW = s.wrapW, wrapH = s.wrapH;
+        boolean[] alive = s.alive, wraps = s.wraps, smooth = s.smooth;
+        double width = s.screenWidth;
+        double height = s.screenHeight;
+        DoubleVector zero = DoubleVector.zero(D);
+        DoubleVector full = DoubleVector.broadcast(D, 360.0);
+
+        int n = 0;
+        int upper = D.loopBound(count);
+        for (; n < upper; n += D.length()) {
+            VectorMask<Double> live = VectorMask.fromArray(D, alive, n);
+            if (!live.anyTrue()) continue;
+
+            //remember where the live sprites were
+            DoubleVector px = DoubleVector.fromArray(D, x, n);
+            DoubleVector py = DoubleVector.fromArray(D, y, n);
+            DoubleVector angle = DoubleVector.fromArray(D, faceAngle, n);
+            DoubleVector.fromArray(D, lastX, n).blend(px, live).intoArray(lastX, n);
+            DoubleVector.fromArray(D, lastY, n).blend(py, live).intoArray(lastY, n);
+            DoubleVector.fromArray(D, lastAngle, n).blend(angle, live).intoArray(lastAngle, n);
+            VectorMask.fromArray(D, smooth, n).or(live).intoArray(smooth, n);
+
+            //move
+            DoubleVector nx = px.add(DoubleVector.fromArray(D, vx, n));
+            DoubleVector ny = py.add(DoubleVector.fromArray(D, vy, n));
+
+            //wrap around the screen edges
+            VectorMask<Double> wrap = VectorMask.fromArray(D, wraps, n).and(live);
+            if (wrap.anyTrue()) {
+                DoubleVector w = zero.sub(DoubleVector.fromArray(D, wrapW, n));
+                DoubleVector h = zero.sub(DoubleVector.fromArray(D, wrapH, n));
+                VectorMask<Double> left = nx.lt(w).and(wrap);
+                VectorMask<Double> right = nx.compare(VectorOperators.GT, width)
+                    .and(wrap).andNot(left);
+                nx = nx.blend(width, left).blend(w, right);
+                VectorMask<Double> top = ny.lt(h).and(wrap);
+                VectorMask<Double> bottom = ny.compare(VectorOperators.GT, height)
+                    .and(wrap).andNot(top);
+                ny = ny.blend(height, top).blend(h, bottom);
+            }
+            px.blend(nx, live).intoArray(x, n);
+            py.blend(ny, live).intoArray(y, n);
+
+            //turn, keeping the face angle between 0 and 360
+            DoubleVector rate = DoubleVector.fromArray(D, rotRate, n);
+            DoubleVector turned = angle.add(rate);
+            VectorMask<Double> under = turned.lt(zero);
+            VectorMask<Double> over = turned.compare(VectorOperators.GT, 360.0)
+                .andNot(under);
+            turned = turned.blend(full.sub(rate), under).blend(rate, over);
+            angle.blend(turned, live).intoArray(faceAngle, n);
+        }
+
+        ScalarIntegrator.integrate(s, n, count);
+    }
+
+    public int age(SpriteStore s, int count, int[] died) {
+        int[] lifespan = s.lifespan, lifeage = s.lifeage;
+        boolean[] alive = s.alive;
+        IntVector zero = IntVector.zero(I);
+        int dead = 0;
+
+        int n = 0;
+        int upper = I.loopBound(count);
+        for (; n < upper; n += I.length()) {
+            VectorMask<Integer> live = VectorMask.fromArray(I, alive, n);
+            if (!live.anyTrue()) continue;
+
+            //if lifespan is used, it must be > 0
+            IntVector span = IntVector.fromArray(I, lifespan, n);
+            VectorMask<Integer> aging = live.and(span.compare(VectorOperators.GT, 0));
+            if (!aging.anyTrue()) continue;
+
+            IntVector age = IntVector.fromArray(I, lifeage, n);
+            IntVector older = age.add(1);
+            VectorMask<Integer> dies = aging.and(older.compare(VectorOperators.GT, span));
+            age.blend(older, aging).blend(zero, dies).intoArray(lifeage, n);
+
+            //kill the sprites that are too old and report them
+            if (dies.anyTrue()) {
+                live.andNot(dies).intoArray(alive, n);
+                for (int lane = 0; lane < I.length(); lane++) {
+                    if (dies.laneIsSet(lane)) {
+                        died[dead++] = n + lane;
+                    }
+                }
+            }
+        }
+
+        return ScalarIntegrator.age(s, n, count, died, dead);
+    }
+}